@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.benchmarks;
+
+import au.com.addstar.monolith.BoundingBox;
+import au.com.addstar.monolith.util.EntityUtil;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ray tests against many {@link BoundingBox}es, one box at a time
+ * and through the packed bulk methods
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundingBoxBenchmark {
+    private static final int RayCount = 1024;
+
+    @Param({"100", "1000"})
+    public int boxes;
+
+    @Param
+    public Ray.Shape shape;
+
+    private BoundingBox[] boxList;
+    private double[] packed;
+    private double[] distances;
+    private Ray[] rays;
+    private int next;
+
+    @Setup
+    public void setup() {
+        FakeWorld world = new FakeWorld(128, 0, boxes, 42);
+        rays = shape.generate(world, RayCount, 7);
+
+        List<Entity> entities = world.getEntities();
+        boxList = new BoundingBox[entities.size()];
+        packed = new double[entities.size() * BoundingBox.STRIDE];
+        distances = new double[entities.size()];
+        for (int i = 0; i < boxList.length; ++i) {
+            boxList[i] = EntityUtil.getBoundingBox(entities.get(i));
+            boxList[i].writeTo(packed, i);
+        }
+    }
+
+    private Ray nextRay() {
+        Ray ray = rays[next];
+        next = (next + 1) & (RayCount - 1);
+        return ray;
+    }
+
+    @Benchmark
+    public int getIntersectionPoint() {
+        Ray ray = nextRay();
+        Vector start = ray.start.toVector();
+        Vector end = ray.end.toVector();
+
+        int hits = 0;
+        for (BoundingBox box : boxList) {
+            if (box.getIntersectionPoint(start, end) != null)
+                ++hits;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int getIntersectionDistance() {
+        Ray ray = nextRay();
+
+        int hits = 0;
+        for (BoundingBox box : boxList) {
+            if (box.getIntersectionDistance(ray.start.getX(), ray.start.getY(), ray.start.getZ(), ray.delta.getX(), ray.delta.getY(), ray.delta.getZ(), 1) >= 0)
+                ++hits;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int intersectRayPacked() {
+        Ray ray = nextRay();
+        return BoundingBox.intersectRay(packed, boxList.length, ray.start.getX(), ray.start.getY(), ray.start.getZ(), ray.delta.getX(), ray.delta.getY(), ray.delta.getZ(), 1, distances);
+    }
+
+    @Benchmark
+    public int intersectRayNearestPacked() {
+        Ray ray = nextRay();
+        return BoundingBox.intersectRayNearest(packed, boxList.length, ray.start.getX(), ray.start.getY(), ray.start.getZ(), ray.delta.getX(), ray.delta.getY(), ray.delta.getZ(), 1);
+    }
+}
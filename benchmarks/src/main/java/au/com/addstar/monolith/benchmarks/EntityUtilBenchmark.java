@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.benchmarks;
+
+import au.com.addstar.monolith.BoundingBox;
+import au.com.addstar.monolith.util.EntityUtil;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link EntityUtil} area queries
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityUtilBenchmark {
+    private static final int QueryCount = 1024;
+
+    @Param({"100", "1000", "5000"})
+    public int entities;
+
+    @Param({"4", "16"})
+    public double radius;
+
+    private World world;
+    private Location[] queries;
+    private Vector[] directions;
+    private BoundingBox area;
+    private int next;
+
+    @Setup
+    public void setup() {
+        FakeWorld fake = new FakeWorld(128, 0, entities, 42);
+        world = fake.getWorld();
+        area = new BoundingBox(0, 0, 0, 0, 0, 0);
+
+        Random random = new Random(7);
+        queries = new Location[QueryCount];
+        directions = new Vector[QueryCount];
+        for (int i = 0; i < QueryCount; ++i) {
+            queries[i] = new Location(world, random.nextDouble() * 128, random.nextDouble() * 128, random.nextDouble() * 128);
+            directions[i] = new Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+        }
+    }
+
+    private int nextQuery() {
+        int index = next;
+        next = (next + 1) & (QueryCount - 1);
+        return index;
+    }
+
+    @Benchmark
+    public List<Entity> getEntitiesWithin() {
+        Location at = queries[nextQuery()];
+        area.set(at.getX() - radius, at.getY() - radius, at.getZ() - radius, at.getX() + radius, at.getY() + radius, at.getZ() + radius);
+        return EntityUtil.getEntitiesWithin(world, area);
+    }
+
+    @Benchmark
+    public List<Entity> getEntitiesInSphere() {
+        Location at = queries[nextQuery()];
+        return EntityUtil.getEntitiesInSphere(world, at.getX(), at.getY(), at.getZ(), radius, Entity.class);
+    }
+
+    @Benchmark
+    public List<Entity> getNearestEntities() {
+        Location at = queries[nextQuery()];
+        return EntityUtil.getNearestEntities(world, at.getX(), at.getY(), at.getZ(), radius, 5, Entity.class);
+    }
+
+    @Benchmark
+    public List<Entity> getEntitiesInCone() {
+        int index = nextQuery();
+        return EntityUtil.getEntitiesInCone(queries[index], directions[index], radius, 30, Entity.class);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+/**
+ * Installs a do-nothing {@link Server} so Bukkit and Monolith's static
+ * initializers can run outside of a real server. Since it is not a
+ * CraftServer, Monolith takes its plain Bukkit API paths.
+ */
+public final class FakeServer {
+    private static final Logger logger = Logger.getLogger("FakeServer");
+
+    private FakeServer() {
+    }
+
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null)
+            return;
+
+        Server server = (Server) Proxy.newProxyInstance(FakeServer.class.getClassLoader(), new Class<?>[]{Server.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getLogger":
+                    return logger;
+                case "getName":
+                    return "FakeServer";
+                case "getVersion":
+                case "getBukkitVersion":
+                    return "benchmark";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeServer";
+                default:
+                    throw new UnsupportedOperationException("FakeServer does not support " + method.getName());
+            }
+        });
+
+        Bukkit.setServer(server);
+    }
+}
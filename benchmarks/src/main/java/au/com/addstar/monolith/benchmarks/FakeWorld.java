@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.benchmarks;
+
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * An in-memory cube of blocks and entities standing in for a {@link World}.
+ * <br>
+ * The world spans 0 to size on every axis. Each block is stone with the
+ * given density, otherwise air. Entities are player sized and placed at
+ * random. Only the methods Monolith's raytracing and entity queries use
+ * are implemented, anything else throws.
+ * <br>
+ * Blocks are created on every lookup just like CraftBukkit does, so
+ * allocation rates stay comparable.
+ */
+public class FakeWorld {
+    private static final double EntityWidth = 0.6;
+    private static final double EntityHeight = 1.8;
+
+    private final int size;
+    private final boolean[] solid;
+    private final List<Entity> entities;
+    private final World world;
+    private final UUID uid;
+
+    /**
+     * Creates a new world
+     *
+     * @param size        The length of each side in blocks
+     * @param density     The fraction of blocks that are solid, between 0 and 1
+     * @param entityCount The number of entities to place
+     * @param seed        The random seed, so runs are repeatable
+     */
+    public FakeWorld(int size, double density, int entityCount, long seed) {
+        FakeServer.install();
+
+        this.size = size;
+        uid = new UUID(0, seed);
+        world = (World) Proxy.newProxyInstance(FakeWorld.class.getClassLoader(), new Class<?>[]{World.class}, new WorldHandler());
+
+        Random random = new Random(seed);
+        solid = new boolean[size * size * size];
+        for (int i = 0; i < solid.length; ++i)
+            solid[i] = random.nextDouble() < density;
+
+        entities = new ArrayList<>(entityCount);
+        for (int i = 0; i < entityCount; ++i) {
+            double x = random.nextDouble() * size;
+            double y = random.nextDouble() * (size - EntityHeight);
+            double z = random.nextDouble() * size;
+            entities.add(createEntity(i, x, y, z));
+        }
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    public boolean isSolid(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= size || y >= size || z >= size)
+            return false;
+        return solid[(y * size + z) * size + x];
+    }
+
+    private Collection<Entity> getNearbyEntities(BoundingBox area, Predicate<Entity> filter) {
+        List<Entity> found = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (entity.getBoundingBox().overlaps(area) && (filter == null || filter.test(entity)))
+                found.add(entity);
+        }
+        return found;
+    }
+
+    private Block createBlock(int x, int y, int z) {
+        Material type = isSolid(x, y, z) ? Material.STONE : Material.AIR;
+        return (Block) Proxy.newProxyInstance(FakeWorld.class.getClassLoader(), new Class<?>[]{Block.class}, new BlockHandler(x, y, z, type));
+    }
+
+    private Entity createEntity(int id, double x, double y, double z) {
+        Location location = new Location(world, x, y, z);
+        BoundingBox bounds = new BoundingBox(x - EntityWidth / 2, y, z - EntityWidth / 2, x + EntityWidth / 2, y + EntityHeight, z + EntityWidth / 2);
+        UUID entityUid = new UUID(uid.getLeastSignificantBits(), id);
+
+        return (Entity) Proxy.newProxyInstance(FakeWorld.class.getClassLoader(), new Class<?>[]{Entity.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getLocation":
+                    if (args != null && args.length == 1)
+                        return ((Location) args[0]).zero().add(location);
+                    return location.clone();
+                case "getBoundingBox":
+                    return bounds.clone();
+                case "getWorld":
+                    return world;
+                case "getEntityId":
+                    return id;
+                case "getUniqueId":
+                    return entityUid;
+                case "getType":
+                    return EntityType.ZOMBIE;
+                case "isValid":
+                    return true;
+                case "isDead":
+                    return false;
+                default:
+                    return handleObjectMethod(proxy, method, args, "FakeEntity#" + id);
+            }
+        });
+    }
+
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args, String name) {
+        switch (method.getName()) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return name;
+            default:
+                throw new UnsupportedOperationException(name + " does not support " + method.getName());
+        }
+    }
+
+    private class WorldHandler implements InvocationHandler {
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getBlockAt":
+                    if (args.length == 1) {
+                        Location location = (Location) args[0];
+                        return createBlock(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+                    }
+                    return createBlock((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+                case "getNearbyEntities":
+                    if (args.length == 2 && args[0] instanceof BoundingBox)
+                        return getNearbyEntities((BoundingBox) args[0], (Predicate<Entity>) args[1]);
+                    if (args.length == 1)
+                        return getNearbyEntities((BoundingBox) args[0], null);
+                    break;
+                case "getEntities":
+                    return new ArrayList<>(entities);
+                case "getName":
+                    return "fake";
+                case "getUID":
+                    return uid;
+                case "getMinHeight":
+                    return 0;
+                case "getMaxHeight":
+                    return size;
+            }
+
+            return handleObjectMethod(proxy, method, args, "FakeWorld");
+        }
+    }
+
+    private class BlockHandler implements InvocationHandler {
+        private final int x;
+        private final int y;
+        private final int z;
+        private final Material type;
+
+        BlockHandler(int x, int y, int z, Material type) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getType":
+                    return type;
+                case "getX":
+                    return x;
+                case "getY":
+                    return y;
+                case "getZ":
+                    return z;
+                case "getWorld":
+                    return world;
+                case "getLocation":
+                    if (args != null && args.length == 1)
+                        return ((Location) args[0]).zero().add(x, y, z);
+                    return new Location(world, x, y, z);
+                case "getBoundingBox":
+                    return bounds();
+                case "getState":
+                    return Proxy.newProxyInstance(FakeWorld.class.getClassLoader(), new Class<?>[]{BlockState.class}, (state, stateMethod, stateArgs) -> {
+                        switch (stateMethod.getName()) {
+                            case "getType":
+                                return type;
+                            case "getBlock":
+                                return proxy;
+                            default:
+                                return handleObjectMethod(state, stateMethod, stateArgs, "FakeBlockState");
+                        }
+                    });
+                case "rayTrace":
+                    return rayTrace((Block) proxy, (Location) args[0], (Vector) args[1], (Double) args[2], (FluidCollisionMode) args[3]);
+                case "hashCode":
+                    return (y * 31 + z) * 31 + x;
+                case "equals":
+                    if (!Proxy.isProxyClass(args[0].getClass()) || !(args[0] instanceof Block))
+                        return false;
+                    Block other = (Block) args[0];
+                    return other.getX() == x && other.getY() == y && other.getZ() == z;
+            }
+
+            return handleObjectMethod(proxy, method, args, "FakeBlock[" + x + "," + y + "," + z + "]");
+        }
+
+        private BoundingBox bounds() {
+            if (type == Material.AIR)
+                return new BoundingBox(x, y, z, x, y, z);
+            return new BoundingBox(x, y, z, x + 1, y + 1, z + 1);
+        }
+
+        // Mirrors CraftBlock#rayTrace for a full cube
+        private RayTraceResult rayTrace(Block block, Location start, Vector direction, double maxDistance, FluidCollisionMode fluidMode) {
+            if (type == Material.AIR || direction.lengthSquared() == 0)
+                return null;
+
+            RayTraceResult result = bounds().rayTrace(start.toVector(), direction, maxDistance);
+            if (result == null)
+                return null;
+
+            return new RayTraceResult(result.getHitPosition(), block, result.getHitBlockFace());
+        }
+    }
+}
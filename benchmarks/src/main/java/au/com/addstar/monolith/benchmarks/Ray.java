@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.benchmarks;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+
+import java.util.Random;
+
+/**
+ * A precomputed ray through a {@link FakeWorld}
+ */
+public class Ray {
+    public final Location start;
+    public final Location end;
+    /**
+     * The unnormalized direction, start to end
+     */
+    public final Vector delta;
+
+    Ray(World world, double x1, double y1, double z1, double x2, double y2, double z2) {
+        start = new Location(world, x1, y1, z1);
+        end = new Location(world, x2, y2, z2);
+        delta = new Vector(x2 - x1, y2 - y1, z2 - z1);
+    }
+
+    public double length() {
+        return delta.length();
+    }
+
+    /**
+     * The kinds of rays benchmarked. Axis aligned rays run along X only,
+     * which is the traversal's best case. Diagonal rays step through all
+     * three axes.
+     */
+    public enum Shape {
+        SHORT_AXIS(8, false),
+        SHORT_DIAGONAL(8, true),
+        LONG_AXIS(64, false),
+        LONG_DIAGONAL(64, true);
+
+        private final double length;
+        private final boolean diagonal;
+
+        Shape(double length, boolean diagonal) {
+            this.length = length;
+            this.diagonal = diagonal;
+        }
+
+        /**
+         * Generates rays that start and end inside the world
+         *
+         * @param world The world to generate in
+         * @param count The number of rays
+         * @param seed  The random seed, so runs are repeatable
+         * @return The rays
+         */
+        public Ray[] generate(FakeWorld world, int count, long seed) {
+            Random random = new Random(seed);
+            Ray[] rays = new Ray[count];
+            // Each axis of a diagonal ray covers length / sqrt(3)
+            double extent = diagonal ? length / Math.sqrt(3) : length;
+            double room = world.getSize() - extent;
+
+            for (int i = 0; i < count; ++i) {
+                double x = random.nextDouble() * room;
+                double y = random.nextDouble() * room;
+                double z = random.nextDouble() * room;
+
+                if (diagonal) {
+                    // Randomize which way along each axis it heads
+                    double dx = random.nextBoolean() ? extent : -extent;
+                    double dy = random.nextBoolean() ? extent : -extent;
+                    double dz = random.nextBoolean() ? extent : -extent;
+                    double sx = dx < 0 ? x + extent : x;
+                    double sy = dy < 0 ? y + extent : y;
+                    double sz = dz < 0 ? z + extent : z;
+                    rays[i] = new Ray(world.getWorld(), sx, sy, sz, sx + dx, sy + dy, sz + dz);
+                } else {
+                    rays[i] = new Ray(world.getWorld(), x, y, z, x + extent, y, z);
+                }
+            }
+
+            return rays;
+        }
+    }
+}
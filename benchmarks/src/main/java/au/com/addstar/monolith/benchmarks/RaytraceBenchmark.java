@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.benchmarks;
+
+import au.com.addstar.monolith.util.Raytrace;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Raytrace} against blocks and entities
+ */
+@SuppressWarnings("deprecation")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaytraceBenchmark {
+    private static final int RayCount = 1024;
+
+    @Param({"0.0", "0.02", "0.1"})
+    public double density;
+
+    @Param({"0", "100", "1000"})
+    public int entities;
+
+    @Param
+    public Ray.Shape shape;
+
+    private Ray[] rays;
+    private int next;
+
+    private Raytrace everything;
+    private Raytrace blocksOnly;
+
+    @Setup
+    public void setup() {
+        FakeWorld world = new FakeWorld(128, density, entities, 42);
+        rays = shape.generate(world, RayCount, 7);
+
+        everything = new Raytrace();
+        blocksOnly = new Raytrace().ignoreAllEntities();
+    }
+
+    private Ray nextRay() {
+        Ray ray = rays[next];
+        next = (next + 1) & (RayCount - 1);
+        return ray;
+    }
+
+    @Benchmark
+    public Raytrace.Hit traceOnce() {
+        Ray ray = nextRay();
+        return everything.traceOnce(ray.start, ray.end);
+    }
+
+    @Benchmark
+    public Raytrace.Hit traceOnceBlocksOnly() {
+        Ray ray = nextRay();
+        return blocksOnly.traceOnce(ray.start, ray.end);
+    }
+
+    @Benchmark
+    public List<Raytrace.Hit> traceSome() {
+        Ray ray = nextRay();
+        return everything.traceSome(ray.start, ray.end, 4);
+    }
+}
@@ -22,112 +22,411 @@
 
 package au.com.addstar.monolith;
 
-import org.bukkit.block.BlockFace;
 import org.bukkit.util.Vector;
 
+/**
+ * A mutable axis aligned bounding box.
+ * <br>
+ * The corners are stored as primitives and all of the {@code include}, {@code expand}
+ * and {@code set} operations modify this box in place. For bulk work many boxes can be
+ * packed into a {@code double[]} of {@link #STRIDE} values per box
+ * ({@code minX, minY, minZ, maxX, maxY, maxZ}) and tested with the static methods.
+ */
 public class BoundingBox {
-    private Vector mMinCorner;
-    private Vector mMaxCorner;
+    /**
+     * The number of doubles each box takes up in a packed array
+     */
+    public static final int STRIDE = 6;
+
+    private double mMinX;
+    private double mMinY;
+    private double mMinZ;
+    private double mMaxX;
+    private double mMaxY;
+    private double mMaxZ;
 
     public BoundingBox(Vector corner1, Vector corner2) {
-        mMinCorner = Vector.getMinimum(corner1, corner2);
-        mMaxCorner = Vector.getMaximum(corner1, corner2);
+        set(corner1.getX(), corner1.getY(), corner1.getZ(), corner2.getX(), corner2.getY(), corner2.getZ());
+    }
+
+    public BoundingBox(double x1, double y1, double z1, double x2, double y2, double z2) {
+        set(x1, y1, z1, x2, y2, z2);
+    }
+
+    public BoundingBox(BoundingBox other) {
+        set(other);
+    }
+
+    /**
+     * Sets the corners of this box. The corners do not need to be ordered
+     *
+     * @return this box
+     */
+    public BoundingBox set(double x1, double y1, double z1, double x2, double y2, double z2) {
+        mMinX = Math.min(x1, x2);
+        mMinY = Math.min(y1, y2);
+        mMinZ = Math.min(z1, z2);
+        mMaxX = Math.max(x1, x2);
+        mMaxY = Math.max(y1, y2);
+        mMaxZ = Math.max(z1, z2);
+        return this;
+    }
+
+    /**
+     * Copies the corners of another box into this box
+     *
+     * @param other The box to copy
+     * @return this box
+     */
+    public BoundingBox set(BoundingBox other) {
+        mMinX = other.mMinX;
+        mMinY = other.mMinY;
+        mMinZ = other.mMinZ;
+        mMaxX = other.mMaxX;
+        mMaxY = other.mMaxY;
+        mMaxZ = other.mMaxZ;
+        return this;
+    }
+
+    public double getMinX() {
+        return mMinX;
+    }
+
+    public double getMinY() {
+        return mMinY;
+    }
+
+    public double getMinZ() {
+        return mMinZ;
+    }
+
+    public double getMaxX() {
+        return mMaxX;
     }
 
+    public double getMaxY() {
+        return mMaxY;
+    }
+
+    public double getMaxZ() {
+        return mMaxZ;
+    }
+
+    /**
+     * Gets the minimum corner of this box.
+     *
+     * @return A new vector, changing it does not affect this box
+     */
     public Vector getMinCorner() {
-        return mMinCorner;
+        return new Vector(mMinX, mMinY, mMinZ);
     }
 
+    /**
+     * Gets the maximum corner of this box.
+     *
+     * @return A new vector, changing it does not affect this box
+     */
     public Vector getMaxCorner() {
-        return mMaxCorner;
+        return new Vector(mMaxX, mMaxY, mMaxZ);
     }
 
     public boolean contains(Vector vector) {
-        return vector.isInAABB(mMinCorner, mMaxCorner);
+        return contains(vector.getX(), vector.getY(), vector.getZ());
+    }
+
+    public boolean contains(double x, double y, double z) {
+        return x >= mMinX && x <= mMaxX
+                && y >= mMinY && y <= mMaxY
+                && z >= mMinZ && z <= mMaxZ;
+    }
+
+    public boolean intersects(BoundingBox box) {
+        return mMinX <= box.mMaxX && mMaxX >= box.mMinX
+                && mMinY <= box.mMaxY && mMaxY >= box.mMinY
+                && mMinZ <= box.mMaxZ && mMaxZ >= box.mMinZ;
     }
 
     public void include(BoundingBox box) {
-        mMinCorner = Vector.getMinimum(mMinCorner, box.getMinCorner());
-        mMaxCorner = Vector.getMaximum(mMaxCorner, box.getMaxCorner());
+        mMinX = Math.min(mMinX, box.mMinX);
+        mMinY = Math.min(mMinY, box.mMinY);
+        mMinZ = Math.min(mMinZ, box.mMinZ);
+        mMaxX = Math.max(mMaxX, box.mMaxX);
+        mMaxY = Math.max(mMaxY, box.mMaxY);
+        mMaxZ = Math.max(mMaxZ, box.mMaxZ);
     }
 
     public void include(Vector point) {
-        mMinCorner = Vector.getMinimum(mMinCorner, point);
-        mMaxCorner = Vector.getMaximum(mMaxCorner, point);
+        include(point.getX(), point.getY(), point.getZ());
+    }
+
+    public void include(double x, double y, double z) {
+        mMinX = Math.min(mMinX, x);
+        mMinY = Math.min(mMinY, y);
+        mMinZ = Math.min(mMinZ, z);
+        mMaxX = Math.max(mMaxX, x);
+        mMaxY = Math.max(mMaxY, y);
+        mMaxZ = Math.max(mMaxZ, z);
+    }
+
+    /**
+     * Grows this box by the given amount in every direction
+     *
+     * @param amount The amount to grow by. Negative values shrink the box
+     * @return this box
+     */
+    public BoundingBox expand(double amount) {
+        return expand(amount, amount, amount);
+    }
+
+    /**
+     * Grows this box by the given amounts along each axis, in both directions
+     *
+     * @return this box
+     */
+    public BoundingBox expand(double x, double y, double z) {
+        return set(mMinX - x, mMinY - y, mMinZ - z, mMaxX + x, mMaxY + y, mMaxZ + z);
+    }
+
+    /**
+     * Tests a ray against this box using the slab method.
+     * <br>
+     * The returned value is measured in multiples of the direction vector,
+     * so if the direction is normalized it is the distance along the ray.
+     *
+     * @param originX The ray origin
+     * @param originY The ray origin
+     * @param originZ The ray origin
+     * @param dirX    The ray direction
+     * @param dirY    The ray direction
+     * @param dirZ    The ray direction
+     * @param maxT    The furthest along the ray to consider
+     * @return The entry point along the ray, 0 if the origin is inside, or -1 if the ray misses
+     */
+    public double getIntersectionDistance(double originX, double originY, double originZ, double dirX, double dirY, double dirZ, double maxT) {
+        return intersectRay(mMinX, mMinY, mMinZ, mMaxX, mMaxY, mMaxZ, originX, originY, originZ, dirX, dirY, dirZ, maxT);
     }
 
     public Vector getIntersectionPoint(Vector start, Vector end) {
-        // Quick tests to rule it out
-        if (start.getX() < mMinCorner.getX() && end.getX() < mMinCorner.getX())
-            return null;
-        if (start.getX() > mMaxCorner.getX() && end.getX() > mMaxCorner.getX())
-            return null;
-        if (start.getY() < mMinCorner.getY() && end.getY() < mMinCorner.getY())
-            return null;
-        if (start.getY() > mMaxCorner.getY() && end.getY() > mMaxCorner.getY())
-            return null;
-        if (start.getZ() < mMinCorner.getZ() && end.getZ() < mMinCorner.getZ())
-            return null;
-        if (start.getZ() > mMaxCorner.getZ() && end.getZ() > mMaxCorner.getZ())
+        double dirX = end.getX() - start.getX();
+        double dirY = end.getY() - start.getY();
+        double dirZ = end.getZ() - start.getZ();
+
+        double t = getIntersectionDistance(start.getX(), start.getY(), start.getZ(), dirX, dirY, dirZ, 1);
+        if (t < 0)
             return null;
+
         // Line starts inside box
-        if (start.getX() > mMinCorner.getX() && start.getX() < mMaxCorner.getX()
-                && start.getY() > mMinCorner.getY() && start.getY() < mMaxCorner.getY()
-                && start.getZ() > mMinCorner.getZ() && start.getZ() < mMaxCorner.getZ())
+        if (t == 0)
             return start;
 
-        Vector direction = end.clone().subtract(start);
-
-        // Do intersection tests
-        Vector hit = null;
-        if ((hit = getFaceIntersection(start.getX() - mMinCorner.getX(), end.getX() - mMinCorner.getX(), start, direction, BlockFace.WEST)) != null)
-            return hit;
-        if ((hit = getFaceIntersection(start.getX() - mMaxCorner.getX(), end.getX() - mMaxCorner.getX(), start, direction, BlockFace.WEST)) != null)
-            return hit;
-        if ((hit = getFaceIntersection(start.getY() - mMinCorner.getY(), end.getY() - mMinCorner.getY(), start, direction, BlockFace.DOWN)) != null)
-            return hit;
-        if ((hit = getFaceIntersection(start.getY() - mMaxCorner.getY(), end.getY() - mMaxCorner.getY(), start, direction, BlockFace.DOWN)) != null)
-            return hit;
-        if ((hit = getFaceIntersection(start.getZ() - mMinCorner.getZ(), end.getZ() - mMinCorner.getZ(), start, direction, BlockFace.NORTH)) != null)
-            return hit;
-        if ((hit = getFaceIntersection(start.getZ() - mMaxCorner.getZ(), end.getZ() - mMaxCorner.getZ(), start, direction, BlockFace.NORTH)) != null)
-            return hit;
-
-        // No hit
-        return null;
-    }
-
-    private Vector getFaceIntersection(double dist1, double dist2, Vector start, Vector direction, BlockFace side) {
-        if (dist1 * dist2 >= 0.0)
-            return null;
+        return new Vector(start.getX() + dirX * t, start.getY() + dirY * t, start.getZ() + dirZ * t);
+    }
 
-        if (dist1 == dist2)
-            return null;
+    /**
+     * Writes this box into a packed array
+     *
+     * @param boxes The packed array
+     * @param index The index of the box (not the array offset)
+     */
+    public void writeTo(double[] boxes, int index) {
+        int offset = index * STRIDE;
+        boxes[offset] = mMinX;
+        boxes[offset + 1] = mMinY;
+        boxes[offset + 2] = mMinZ;
+        boxes[offset + 3] = mMaxX;
+        boxes[offset + 4] = mMaxY;
+        boxes[offset + 5] = mMaxZ;
+    }
+
+    /**
+     * Reads this box from a packed array
+     *
+     * @param boxes The packed array
+     * @param index The index of the box (not the array offset)
+     * @return this box
+     */
+    public BoundingBox readFrom(double[] boxes, int index) {
+        int offset = index * STRIDE;
+        return set(boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]);
+    }
 
-        Vector hit = start.clone().add(direction.clone().multiply((-dist1) / (dist2 - dist1)));
-
-        // Check that it is on the face
-        switch (side) {
-            case DOWN:
-            case UP:
-                if (hit.getZ() > mMinCorner.getZ() && hit.getZ() < mMaxCorner.getZ() && hit.getX() > mMinCorner.getX() && hit.getX() < mMaxCorner.getX())
-                    return hit;
-                break;
-            case NORTH:
-            case SOUTH:
-                if (hit.getX() > mMinCorner.getX() && hit.getX() < mMaxCorner.getX() && hit.getY() > mMinCorner.getY() && hit.getY() < mMaxCorner.getY())
-                    return hit;
-                break;
-            case WEST:
-            case EAST:
-                if (hit.getZ() > mMinCorner.getZ() && hit.getZ() < mMaxCorner.getZ() && hit.getY() > mMinCorner.getY() && hit.getY() < mMaxCorner.getY())
-                    return hit;
-                break;
-            default:
-                throw new AssertionError("No other values should be used here");
+    /**
+     * Tests a ray against every box in a packed array.
+     *
+     * @param boxes     The packed boxes
+     * @param count     The number of boxes to test
+     * @param originX   The ray origin
+     * @param originY   The ray origin
+     * @param originZ   The ray origin
+     * @param dirX      The ray direction
+     * @param dirY      The ray direction
+     * @param dirZ      The ray direction
+     * @param maxT      The furthest along the ray to consider
+     * @param distances Receives the entry point for each box, or -1 for a miss. Must hold at least count values
+     * @return The number of boxes that were hit
+     */
+    public static int intersectRay(double[] boxes, int count, double originX, double originY, double originZ, double dirX, double dirY, double dirZ, double maxT, double[] distances) {
+        int hits = 0;
+        for (int i = 0, offset = 0; i < count; ++i, offset += STRIDE) {
+            double t = intersectRay(boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3], boxes[offset + 4], boxes[offset + 5],
+                    originX, originY, originZ, dirX, dirY, dirZ, maxT);
+            distances[i] = t;
+            if (t >= 0)
+                ++hits;
         }
 
-        // Not in the face
-        return null;
+        return hits;
+    }
+
+    /**
+     * Finds the first box in a packed array that a ray enters.
+     *
+     * @param boxes   The packed boxes
+     * @param count   The number of boxes to test
+     * @param originX The ray origin
+     * @param originY The ray origin
+     * @param originZ The ray origin
+     * @param dirX    The ray direction
+     * @param dirY    The ray direction
+     * @param dirZ    The ray direction
+     * @param maxT    The furthest along the ray to consider
+     * @return The index of the nearest box hit, or -1 if none were
+     */
+    public static int intersectRayNearest(double[] boxes, int count, double originX, double originY, double originZ, double dirX, double dirY, double dirZ, double maxT) {
+        int nearest = -1;
+        double limit = maxT;
+        for (int i = 0, offset = 0; i < count; ++i, offset += STRIDE) {
+            double t = intersectRay(boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3], boxes[offset + 4], boxes[offset + 5],
+                    originX, originY, originZ, dirX, dirY, dirZ, limit);
+            if (t >= 0) {
+                // Anything further than this one can be skipped from now on
+                nearest = i;
+                limit = t;
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * Finds all boxes in a packed array that intersect the given box.
+     *
+     * @param boxes   The packed boxes
+     * @param count   The number of boxes to test
+     * @param query   The box to test against
+     * @param indices Receives the indices of the intersecting boxes. Must hold at least count values
+     * @return The number of indices written
+     */
+    public static int intersectAll(double[] boxes, int count, BoundingBox query, int[] indices) {
+        int found = 0;
+        for (int i = 0, offset = 0; i < count; ++i, offset += STRIDE) {
+            if (boxes[offset] <= query.mMaxX && boxes[offset + 3] >= query.mMinX
+                    && boxes[offset + 1] <= query.mMaxY && boxes[offset + 4] >= query.mMinY
+                    && boxes[offset + 2] <= query.mMaxZ && boxes[offset + 5] >= query.mMinZ) {
+                indices[found++] = i;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds all boxes in a packed array that contain the given point.
+     *
+     * @param boxes   The packed boxes
+     * @param count   The number of boxes to test
+     * @param x       The point
+     * @param y       The point
+     * @param z       The point
+     * @param indices Receives the indices of the containing boxes. Must hold at least count values
+     * @return The number of indices written
+     */
+    public static int containsAll(double[] boxes, int count, double x, double y, double z, int[] indices) {
+        int found = 0;
+        for (int i = 0, offset = 0; i < count; ++i, offset += STRIDE) {
+            if (x >= boxes[offset] && x <= boxes[offset + 3]
+                    && y >= boxes[offset + 1] && y <= boxes[offset + 4]
+                    && z >= boxes[offset + 2] && z <= boxes[offset + 5]) {
+                indices[found++] = i;
+            }
+        }
+
+        return found;
+    }
+
+    private static double intersectRay(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                       double originX, double originY, double originZ, double dirX, double dirY, double dirZ, double maxT) {
+        double near = 0;
+        double far = maxT;
+
+        // X slab
+        if (dirX == 0) {
+            if (originX < minX || originX > maxX)
+                return -1;
+        } else {
+            double inv = 1.0 / dirX;
+            double t1 = (minX - originX) * inv;
+            double t2 = (maxX - originX) * inv;
+            if (t1 > t2) {
+                double temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            if (t1 > near)
+                near = t1;
+            if (t2 < far)
+                far = t2;
+            if (near > far)
+                return -1;
+        }
+
+        // Y slab
+        if (dirY == 0) {
+            if (originY < minY || originY > maxY)
+                return -1;
+        } else {
+            double inv = 1.0 / dirY;
+            double t1 = (minY - originY) * inv;
+            double t2 = (maxY - originY) * inv;
+            if (t1 > t2) {
+                double temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            if (t1 > near)
+                near = t1;
+            if (t2 < far)
+                far = t2;
+            if (near > far)
+                return -1;
+        }
+
+        // Z slab
+        if (dirZ == 0) {
+            if (originZ < minZ || originZ > maxZ)
+                return -1;
+        } else {
+            double inv = 1.0 / dirZ;
+            double t1 = (minZ - originZ) * inv;
+            double t2 = (maxZ - originZ) * inv;
+            if (t1 > t2) {
+                double temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            if (t1 > near)
+                near = t1;
+            if (t2 < far)
+                far = t2;
+            if (near > far)
+                return -1;
+        }
+
+        return near;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BoundingBox{%.2f,%.2f,%.2f -> %.2f,%.2f,%.2f}", mMinX, mMinY, mMinZ, mMaxX, mMaxY, mMaxZ);
     }
 }
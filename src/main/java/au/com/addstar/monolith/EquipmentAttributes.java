@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith;
+
+import org.bukkit.Bukkit;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeModifier.Operation;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+
+import au.com.addstar.monolith.attributes.ItemAttributes;
+
+/**
+ * Keeps the combined attribute modifiers of everything a player has equipped.
+ * Only the slots whose item changed are read again, and reading the totals
+ * does not allocate.
+ * <br>
+ * Changes the player makes through their inventory are noticed automatically.
+ * Code that changes equipment directly, such as {@link EntityEquipment} setters,
+ * {@code Inventory.setItem} or giving items, fires no event for this, so it must
+ * call {@link #invalidate()} afterwards.
+ * <br>
+ * Only the modifiers stored on the items are counted, not the default
+ * attributes of the item types.
+ */
+public class EquipmentAttributes {
+    private static final EquipmentSlot[] Slots = EquipmentSlot.values();
+    private static final Attribute[] AllAttributes = Attribute.values();
+    private static final int OperationCount = Operation.values().length;
+
+    private final Player mPlayer;
+
+    // A copy of the item last read for each slot, null if it was empty
+    private final ItemStack[] mItems = new ItemStack[Slots.length];
+    private final boolean[] mRead = new boolean[Slots.length];
+    // Totals of each slot, null when the slot contributes nothing
+    private final double[][] mSlotTotals = new double[Slots.length][];
+    private final double[] mTotals = newTotals();
+
+    private boolean mDirty = true;
+    private boolean mRecheckPending;
+
+    EquipmentAttributes(Player player) {
+        mPlayer = player;
+    }
+
+    private static double[] newTotals() {
+        double[] totals = new double[AllAttributes.length * OperationCount];
+        for (int attribute = 0; attribute < AllAttributes.length; ++attribute)
+            totals[attribute * OperationCount + Operation.MULTIPLY_SCALAR_1.ordinal()] = 1;
+        return totals;
+    }
+
+    private static int index(Attribute attribute, Operation operation) {
+        return attribute.ordinal() * OperationCount + operation.ordinal();
+    }
+
+    /**
+     * Marks the equipment as changed. The slots are checked the next time
+     * the totals are read, and again on the next tick as inventory events
+     * fire before the change is applied.
+     * <br>
+     * Call this after changing the player's equipment from code.
+     */
+    public void invalidate() {
+        mDirty = true;
+        if (!mRecheckPending) {
+            mRecheckPending = true;
+            Bukkit.getScheduler().runTask(Monolith.getInstance(), () -> {
+                mRecheckPending = false;
+                mDirty = true;
+            });
+        }
+    }
+
+    private void refresh() {
+        mDirty = false;
+        EntityEquipment equipment = mPlayer.getEquipment();
+        if (equipment == null)
+            return;
+
+        boolean changed = false;
+        for (int i = 0; i < Slots.length; ++i) {
+            ItemStack item = equipment.getItem(Slots[i]);
+            boolean empty = (item == null || item.getType().isAir());
+
+            // Server item stacks compare their NBT directly, without copying the meta
+            if (mRead[i] && (empty ? mItems[i] == null : mItems[i] != null && mItems[i].isSimilar(item)))
+                continue;
+
+            mRead[i] = true;
+            mItems[i] = (empty ? null : item.clone());
+            mSlotTotals[i] = (empty ? null : readTotals(item, Slots[i]));
+            changed = true;
+        }
+
+        if (changed)
+            fold();
+    }
+
+    private static double[] readTotals(ItemStack item, EquipmentSlot slot) {
+        ItemAttributes attributes = new MonoItemStack(item).getAttributesIfPresent();
+        if (attributes == null)
+            return null;
+
+        double[] totals = new double[AllAttributes.length * OperationCount];
+        for (Attribute attribute : AllAttributes) {
+            for (Operation operation : Operation.values())
+                totals[index(attribute, operation)] = attributes.getTotal(attribute, operation, slot);
+        }
+
+        return totals;
+    }
+
+    private void fold() {
+        int multiply = Operation.MULTIPLY_SCALAR_1.ordinal();
+        for (int i = 0; i < mTotals.length; ++i)
+            mTotals[i] = (i % OperationCount == multiply ? 1 : 0);
+
+        for (double[] slotTotals : mSlotTotals) {
+            if (slotTotals == null)
+                continue;
+
+            for (int i = 0; i < mTotals.length; ++i) {
+                if (i % OperationCount == multiply)
+                    mTotals[i] *= slotTotals[i];
+                else
+                    mTotals[i] += slotTotals[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the combined amount of all equipped modifiers of the given attribute and operation.
+     * For {@link Operation#MULTIPLY_SCALAR_1} this is the product of (1 + amount),
+     * otherwise it is the sum of the amounts.
+     *
+     * @param attribute The modified attribute
+     * @param operation The operation of the modifiers
+     * @return The total
+     */
+    public double getTotal(Attribute attribute, Operation operation) {
+        if (mDirty)
+            refresh();
+
+        return mTotals[index(attribute, operation)];
+    }
+
+    /**
+     * Applies all equipped modifiers of the given attribute to a base value,
+     * in the same order as Minecraft does
+     *
+     * @param attribute The modified attribute
+     * @param base      The base value of the attribute
+     * @return The modified value
+     */
+    public double getValue(Attribute attribute, double base) {
+        return (base + getTotal(attribute, Operation.ADD_NUMBER))
+                * (1 + getTotal(attribute, Operation.ADD_SCALAR))
+                * getTotal(attribute, Operation.MULTIPLY_SCALAR_1);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * An item definition that has already been parsed.
+ * Creating items from a blueprint clones a prebuilt prototype,
+ * so the definition strings are parsed only once.
+ * <br>
+ * Blueprints are immutable and can be shared.
+ */
+public final class ItemBlueprint {
+    private final ItemStack prototype;
+
+    private ItemBlueprint(ItemStack prototype) {
+        this.prototype = prototype;
+    }
+
+    /**
+     * Parses a list of definitions, as accepted by {@link ItemMetaBuilder#accept(String)}
+     *
+     * @param base        The item to apply the definitions to. This is not modified
+     * @param definitions Definitions in the format of {@code <name>:<value>}
+     * @return The blueprint
+     * @throws IllegalArgumentException if any definition cannot be parsed
+     */
+    public static ItemBlueprint compile(ItemStack base, Iterable<String> definitions) throws IllegalArgumentException {
+        Validate.notNull(base);
+
+        ItemMetaBuilder builder = new ItemMetaBuilder(base.clone());
+        for (String definition : definitions) {
+            builder.accept(definition);
+        }
+
+        return new ItemBlueprint(builder.getItemStack());
+    }
+
+    /**
+     * Parses a list of definitions for a single item of a material
+     *
+     * @param material    The material of the item
+     * @param definitions Definitions in the format of {@code <name>:<value>}
+     * @return The blueprint
+     * @throws IllegalArgumentException if any definition cannot be parsed
+     * @see #compile(ItemStack, Iterable)
+     */
+    public static ItemBlueprint compile(Material material, Iterable<String> definitions) throws IllegalArgumentException {
+        return compile(new ItemStack(material), definitions);
+    }
+
+    /**
+     * Creates a new item from this blueprint
+     *
+     * @return A new ItemStack
+     */
+    public ItemStack create() {
+        return prototype.clone();
+    }
+
+    /**
+     * Creates a new item from this blueprint with a different amount
+     *
+     * @param amount The amount of the item
+     * @return A new ItemStack
+     */
+    public ItemStack create(int amount) {
+        ItemStack item = prototype.clone();
+        item.setAmount(amount);
+        return item;
+    }
+
+    /**
+     * Gets the material of the items created
+     *
+     * @return The material
+     */
+    public Material getType() {
+        return prototype.getType();
+    }
+
+    /**
+     * Checks if an item could have been created from this blueprint.
+     * The amount is ignored.
+     *
+     * @param item The item to check
+     * @return True if the item is similar to the prototype
+     */
+    public boolean matches(ItemStack item) {
+        return prototype.isSimilar(item);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import au.com.addstar.monolith.lookup.Lookup;
+
+/**
+ * Parses a large number of item definitions into {@link ItemBlueprint}s in parallel.
+ * Every definition is checked, and all of the errors are reported together
+ * rather than stopping at the first.
+ * <br>
+ * Each definition is an item name as understood by {@link Lookup#findItemByName(String)},
+ * an amount, and a list of meta definitions as understood by {@link ItemMetaBuilder#accept(String)}.
+ */
+public class ItemCatalogLoader {
+    private final List<Definition> mDefinitions = Lists.newArrayList();
+
+    /**
+     * Adds a definition
+     *
+     * @param key    The key the blueprint will be stored under
+     * @param item   The item name
+     * @param amount The amount of the item
+     * @param meta   The meta definitions, in the format of {@code <name>:<value>}
+     * @return This loader for chaining
+     */
+    public ItemCatalogLoader add(String key, String item, int amount, List<String> meta) {
+        Validate.notNull(key);
+        mDefinitions.add(new Definition(key, item, amount, ImmutableList.copyOf(meta)));
+        return this;
+    }
+
+    /**
+     * Adds every child section of a configuration section as a definition.
+     * Each child uses the keys {@code item}, {@code amount} (default 1) and {@code meta} (a string list).
+     *
+     * @param catalog The section holding the definitions
+     * @return This loader for chaining
+     */
+    public ItemCatalogLoader addAll(ConfigurationSection catalog) {
+        for (String key : catalog.getKeys(false)) {
+            ConfigurationSection section = catalog.getConfigurationSection(key);
+            if (section == null) {
+                // Reported when loaded
+                mDefinitions.add(new Definition(key, null, 1, Collections.emptyList()));
+                continue;
+            }
+
+            add(key, section.getString("item"), section.getInt("amount", 1), section.getStringList("meta"));
+        }
+
+        return this;
+    }
+
+    /**
+     * Parses all definitions on the common fork-join pool and waits for them to finish.
+     *
+     * @return The blueprints and any errors
+     */
+    public Result load() {
+        List<Outcome> outcomes = mDefinitions.parallelStream()
+                .map(ItemCatalogLoader::compile)
+                .collect(Collectors.toList());
+
+        Map<String, ItemBlueprint> blueprints = new LinkedHashMap<>();
+        ImmutableList.Builder<String> errors = ImmutableList.builder();
+        for (int i = 0; i < outcomes.size(); ++i) {
+            String key = mDefinitions.get(i).key;
+            Outcome outcome = outcomes.get(i);
+
+            if (outcome.error != null) {
+                errors.add(key + ": " + outcome.error);
+            } else if (blueprints.putIfAbsent(key, outcome.blueprint) != null) {
+                errors.add(key + ": Duplicate key");
+            }
+        }
+
+        return new Result(ImmutableMap.copyOf(blueprints), errors.build());
+    }
+
+    /**
+     * Parses all definitions off the main thread.
+     * The returned future is completed on the main thread.
+     *
+     * @param plugin The plugin to schedule the completion for
+     * @return A future for the blueprints and any errors
+     */
+    public CompletableFuture<Result> loadAsync(Plugin plugin) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                Result result = load();
+                Bukkit.getScheduler().runTask(plugin, () -> future.complete(result));
+            } catch (Throwable e) {
+                Bukkit.getScheduler().runTask(plugin, () -> future.completeExceptionally(e));
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Compiles one definition. Any failure is kept as an error for that
+     * definition so the rest of the catalog still loads.
+     */
+    private static Outcome compile(Definition definition) {
+        if (definition.item == null) {
+            return Outcome.failed("No item specified");
+        }
+        if (definition.amount <= 0) {
+            return Outcome.failed("Amount must be greater than 0");
+        }
+
+        try {
+            Material material = Lookup.findItemByName(definition.item);
+            if (material == null) {
+                return Outcome.failed("Unknown item " + definition.item);
+            }
+
+            return new Outcome(ItemBlueprint.compile(new ItemStack(material, definition.amount), definition.meta), null);
+        } catch (IllegalArgumentException e) {
+            return Outcome.failed(e.getMessage() != null ? e.getMessage() : e.toString());
+        } catch (RuntimeException e) {
+            return Outcome.failed("Internal error: " + e);
+        }
+    }
+
+    private static class Definition {
+        final String key;
+        final String item;
+        final int amount;
+        final List<String> meta;
+
+        Definition(String key, String item, int amount, List<String> meta) {
+            this.key = key;
+            this.item = item;
+            this.amount = amount;
+            this.meta = meta;
+        }
+    }
+
+    /**
+     * Either the blueprint of one definition or why it failed
+     */
+    private static class Outcome {
+        final ItemBlueprint blueprint;
+        final String error;
+
+        Outcome(ItemBlueprint blueprint, String error) {
+            this.blueprint = blueprint;
+            this.error = error;
+        }
+
+        static Outcome failed(String error) {
+            return new Outcome(null, error);
+        }
+    }
+
+    /**
+     * The outcome of loading a catalog
+     */
+    public static class Result {
+        private final Map<String, ItemBlueprint> mBlueprints;
+        private final List<String> mErrors;
+
+        private Result(Map<String, ItemBlueprint> blueprints, List<String> errors) {
+            mBlueprints = blueprints;
+            mErrors = errors;
+        }
+
+        /**
+         * Gets the blueprints that loaded successfully, in the order they were added
+         *
+         * @return An immutable map of key to blueprint
+         */
+        public Map<String, ItemBlueprint> getBlueprints() {
+            return mBlueprints;
+        }
+
+        /**
+         * Gets the errors, each prefixed with the key of the definition
+         *
+         * @return An immutable list of errors
+         */
+        public List<String> getErrors() {
+            return mErrors;
+        }
+
+        /**
+         * Checks if any definition failed to load
+         *
+         * @return True if there were errors
+         */
+        public boolean hasErrors() {
+            return !mErrors.isEmpty();
+        }
+    }
+}
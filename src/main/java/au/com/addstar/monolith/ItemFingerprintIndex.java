@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An index of the slots of an inventory (or any array of items) by
+ * {@link MonoItemStack#fingerprint(ItemStack) fingerprint}, so that
+ * finding the stacks similar to an item is a single lookup rather than
+ * a comparison against every slot.
+ * <br>
+ * The index does not watch the inventory. Call {@link #update(int, ItemStack)}
+ * when a slot changes, or rebuild the index.
+ */
+public class ItemFingerprintIndex {
+    private final ItemStack[] mItems;
+    private final long[] mFingerprints;
+    private final Map<Long, List<Integer>> mSlots;
+
+    /**
+     * Indexes the given contents
+     *
+     * @param contents The items, by slot. Null and AIR slots are not indexed
+     */
+    public ItemFingerprintIndex(ItemStack[] contents) {
+        mItems = new ItemStack[contents.length];
+        mFingerprints = new long[contents.length];
+        mSlots = Maps.newHashMapWithExpectedSize(contents.length);
+
+        for (int slot = 0; slot < contents.length; ++slot)
+            update(slot, contents[slot]);
+    }
+
+    /**
+     * Indexes the current contents of an inventory
+     *
+     * @param inventory The inventory to index
+     * @return A new index
+     */
+    public static ItemFingerprintIndex of(Inventory inventory) {
+        return new ItemFingerprintIndex(inventory.getContents());
+    }
+
+    /**
+     * Updates the item in a slot
+     *
+     * @param slot The slot
+     * @param item The new item, or null if the slot is now empty
+     */
+    public void update(int slot, ItemStack item) {
+        if (mItems[slot] != null) {
+            List<Integer> slots = mSlots.get(mFingerprints[slot]);
+            slots.remove((Integer) slot);
+            if (slots.isEmpty())
+                mSlots.remove(mFingerprints[slot]);
+        }
+
+        if (item == null || item.getType().isAir()) {
+            mItems[slot] = null;
+            return;
+        }
+
+        long fingerprint = MonoItemStack.fingerprint(item);
+        mItems[slot] = item;
+        mFingerprints[slot] = fingerprint;
+        mSlots.computeIfAbsent(fingerprint, k -> Lists.newArrayListWithCapacity(2)).add(slot);
+    }
+
+    /**
+     * Gets the slots holding items similar to the given item
+     *
+     * @param item The item to match
+     * @return The matching slots in ascending order
+     */
+    public List<Integer> findSimilar(ItemStack item) {
+        List<Integer> slots = mSlots.get(MonoItemStack.fingerprint(item));
+        if (slots == null)
+            return Collections.emptyList();
+
+        // Confirm the matches in case of a fingerprint collision
+        List<Integer> matches = Lists.newArrayListWithCapacity(slots.size());
+        for (int slot : slots) {
+            if (mItems[slot].isSimilar(item))
+                matches.add(slot);
+        }
+
+        Collections.sort(matches);
+        return matches;
+    }
+
+    /**
+     * Gets the first slot holding an item similar to the given item
+     *
+     * @param item The item to match
+     * @return The slot, or -1 if there is none
+     */
+    public int firstSimilar(ItemStack item) {
+        List<Integer> matches = findSimilar(item);
+        return matches.isEmpty() ? -1 : matches.get(0);
+    }
+
+    /**
+     * Gets the total amount of items similar to the given item
+     *
+     * @param item The item to match
+     * @return The total amount over all matching slots
+     */
+    public int countSimilar(ItemStack item) {
+        int total = 0;
+        for (int slot : findSimilar(item))
+            total += mItems[slot].getAmount();
+
+        return total;
+    }
+
+    /**
+     * Gets the item in a slot as it was last indexed
+     *
+     * @param slot The slot
+     * @return The item, or null if the slot is empty
+     */
+    public ItemStack getItem(int slot) {
+        return mItems[slot];
+    }
+
+    /**
+     * Gets the number of slots covered by this index
+     *
+     * @return The number of slots
+     */
+    public int size() {
+        return mItems.length;
+    }
+}
@@ -25,7 +25,11 @@ package au.com.addstar.monolith;
 import au.com.addstar.monolith.lookup.Lookup;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
@@ -51,6 +55,31 @@ import org.bukkit.potion.PotionEffectType;
  */
 @SuppressWarnings("unused")
 public class ItemMetaBuilder {
+    /**
+     * The decoders for each lowercase meta name, in the order they are tried.
+     */
+    private static final Map<String, List<Decoder>> DECODERS;
+
+    static {
+        Map<String, List<Decoder>> decoders = new HashMap<>();
+        BiConsumer<Decoder, String[]> register = (decoder, names) -> {
+            for (String name : names) {
+                decoders.computeIfAbsent(name, k -> new ArrayList<>(2)).add(decoder);
+            }
+        };
+
+        register.accept(ItemMetaBuilder::decodeDefault, new String[]{"name", "lore"});
+        register.accept(ItemMetaBuilder::decodeBook, new String[]{"author", "title", "book"});
+        register.accept(ItemMetaBuilder::decodeFirework, new String[]{"color", "colour", "fade", "shape", "type", "effect"});
+        register.accept(ItemMetaBuilder::decodeLeatherArmor, new String[]{"color", "colour"});
+        register.accept(ItemMetaBuilder::decodeMap, new String[]{"scaling"});
+        register.accept(ItemMetaBuilder::decodePotion, new String[]{"effect", "power", "duration"});
+        register.accept(ItemMetaBuilder::decodeSkull, new String[]{"player", "owner"});
+        register.accept(ItemMetaBuilder::decodeNbtString, new String[]{"nbt"});
+
+        DECODERS = decoders;
+    }
+
     /**
      * The Item meta.
      */
@@ -111,43 +140,28 @@ public class ItemMetaBuilder {
     }
 
     /**
-     * Decodes the value by each method until it finds one thats true.
+     * Decodes the value by the methods registered for its name, then as an enchantment.
      *
      * @param name  The meta name
      * @param value the meta value
      * @throws IllegalArgumentException if it cannot be decoded
      */
     private void accept(final String name, final String value) throws IllegalArgumentException {
-        if (decodeDefault(name, value)) {
-            return;
-        }
-        if (decodeBook(name, value)) {
-            return;
-        }
-        if (decodeFirework(name, value)) {
-            return;
-        }
-        if (decodeLeatherArmor(name, value)) {
-            return;
-        }
-        if (decodeMap(name, value)) {
-            return;
-        }
-        if (decodePotion(name, value)) {
-            return;
-        }
-        if (decodeSkull(name, value)) {
-            return;
+        List<Decoder> decoders = DECODERS.get(name.toLowerCase(Locale.ROOT));
+        if (decoders != null) {
+            for (Decoder decoder : decoders) {
+                if (decoder.decode(this, name, value)) {
+                    return;
+                }
+            }
         }
+        // Any other name can only be an enchantment
         if (decodeStoredEnchants(name, value)) {
             return;
         }
         if (decodeEnchants(name, value)) {
             return;
         }
-        if (decodeNbtString(name, value)) {
-            return;
-        }
         throw new IllegalArgumentException("Unknown meta id: " + name);
     }
 
@@ -526,4 +540,10 @@ public class ItemMetaBuilder {
         return false;
     }
 
+    /**
+     * Decodes one meta name and value.
+     */
+    private interface Decoder {
+        boolean decode(ItemMetaBuilder builder, String name, String value);
+    }
 }
@@ -22,17 +22,112 @@
 
 package au.com.addstar.monolith;
 
+import au.com.addstar.monolith.command.ArgumentParsers;
+import au.com.addstar.monolith.command.CommandStats;
+import au.com.addstar.monolith.properties.CustomProperty;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockDispenseArmorEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.event.server.PluginDisableEvent;
 
 public class Listeners implements Listener {
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPluginDisable(PluginDisableEvent event) {
+        CommandStats.removeAll(event.getPlugin());
+        CustomProperty.unregisterCodecs(event.getPlugin());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPlayerJoin(PlayerJoinEvent event) {
+        ArgumentParsers.updateOnlinePlayers(null);
+    }
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     private void onPlayerQuit(PlayerQuitEvent event) {
         MonoPlayer player = MonoPlayer.getPlayer(event.getPlayer());
         player.onDestroy();
+        ArgumentParsers.updateOnlinePlayers(event.getPlayer());
+    }
+
+    private static void equipmentChanged(Entity entity) {
+        if (!(entity instanceof Player))
+            return;
+
+        MonoPlayer player = MonoPlayer.findPlayer((Player) entity);
+        if (player != null)
+            player.onEquipmentChanged();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onInventoryClick(InventoryClickEvent event) {
+        equipmentChanged(event.getWhoClicked());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onInventoryDrag(InventoryDragEvent event) {
+        equipmentChanged(event.getWhoClicked());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onItemHeld(PlayerItemHeldEvent event) {
+        equipmentChanged(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onSwapHands(PlayerSwapHandItemsEvent event) {
+        equipmentChanged(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onDropItem(PlayerDropItemEvent event) {
+        equipmentChanged(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onPickupItem(EntityPickupItemEvent event) {
+        equipmentChanged(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onInteract(PlayerInteractEvent event) {
+        // Right clicking can equip armour
+        if (event.hasItem())
+            equipmentChanged(event.getPlayer());
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onDispenseArmor(BlockDispenseArmorEvent event) {
+        equipmentChanged(event.getTargetEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onItemBreak(PlayerItemBreakEvent event) {
+        equipmentChanged(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onItemConsume(PlayerItemConsumeEvent event) {
+        equipmentChanged(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onRespawn(PlayerRespawnEvent event) {
+        equipmentChanged(event.getPlayer());
+    }
 }
@@ -24,19 +24,37 @@ package au.com.addstar.monolith;
 
 import au.com.addstar.monolith.attributes.ItemAttributes;
 import au.com.addstar.monolith.attributes.MonoItemAttributes;
+import au.com.addstar.monolith.properties.CompactPropertyFormat;
 import au.com.addstar.monolith.properties.PropertyContainer;
 import au.com.addstar.monolith.properties.PropertyContainerImpl;
 import au.com.addstar.monolith.util.Crafty;
 import  net.minecraft.server.v1_16_R2.NBTBase;
+import  net.minecraft.server.v1_16_R2.NBTNumber;
+import  net.minecraft.server.v1_16_R2.NBTTagByteArray;
 import  net.minecraft.server.v1_16_R2.NBTTagCompound;
+import  net.minecraft.server.v1_16_R2.NBTTagDouble;
+import  net.minecraft.server.v1_16_R2.NBTTagFloat;
+import  net.minecraft.server.v1_16_R2.NBTTagIntArray;
 import  net.minecraft.server.v1_16_R2.NBTTagList;
+import  net.minecraft.server.v1_16_R2.NBTTagLongArray;
+import  net.minecraft.server.v1_16_R2.NBTTagString;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * This class is a type of ItemStack that provides extra
@@ -48,40 +66,66 @@ import java.util.Map;
  */
 public class MonoItemStack extends ItemStack {
     private static final String PropertiesNBTKey = "-mono-properties";
+    private static final String CompactPropertiesNBTKey = "-mono-properties-c";
     private static final String AttributesNBTKey = "AttributeModifiers";
 
-    private static final Field CraftStack_Handle;
-    private static final Field NMSStack_Tag;
+    // All handles are adapted to Object signatures so they can be called with invokeExact
+    private static final MethodHandle CraftStack_Handle;
+    private static final MethodHandle NMSStack_GetTag;
+    private static final MethodHandle NMSStack_SetTag;
+    private static final MethodHandle CraftStack_AsNMSCopy;
+    private static final MethodHandle CraftStack_SetItemMeta;
 
-    private static final Field BukkitStack_UnhandledTags;
+    private static final MethodHandle BukkitStack_Meta;
+    private static final MethodHandle CraftMeta_UnhandledTags;
     private static Class<?> craftItemStackClass;
 
+    private static volatile boolean compactProperties;
+
+    private static final HashFunction FingerprintHash = Hashing.murmur3_128();
+
     static {
         // Work out how to get the NBT data from item stacks
-        try {
-            // For CraftItemStacks
-
-            craftItemStackClass = Crafty.findCraftClass("inventory.CraftItemStack");
-            CraftStack_Handle = craftItemStackClass.getDeclaredField("handle");
-            NMSStack_Tag = CraftStack_Handle.getType().getDeclaredField("tag");
+        // For CraftItemStacks
+        craftItemStackClass = Crafty.findCraftClass("inventory.CraftItemStack");
+        Class<?> nmsStack = Crafty.findNmsClass("ItemStack");
+        Class<?> nmsTag = Crafty.findNmsClass("NBTTagCompound");
+
+        CraftStack_Handle = adapt(Crafty.findGetter(craftItemStackClass, "handle", nmsStack));
+        NMSStack_GetTag = adapt(Crafty.findGetter(nmsStack, "tag", nmsTag));
+        NMSStack_SetTag = adapt(Crafty.findSetter(nmsStack, "tag", nmsTag));
+        // Writes item meta as NBT the same way the server does
+        CraftStack_AsNMSCopy = adapt(Crafty.findStaticMethod(craftItemStackClass, "asNMSCopy", nmsStack, ItemStack.class));
+        CraftStack_SetItemMeta = adapt(Crafty.findStaticMethod(craftItemStackClass, "setItemMeta", boolean.class, nmsStack, ItemMeta.class));
+
+        // For plain old bukkit item stacks, the meta they hold is used directly
+        BukkitStack_Meta = adapt(Crafty.findGetter(ItemStack.class, "meta", ItemMeta.class));
+        CraftMeta_UnhandledTags = adapt(Crafty.findGetter(Crafty.findCraftClass("inventory.CraftMetaItem"), "unhandledTags", Map.class));
+
+        if (CraftStack_Handle == null || NMSStack_GetTag == null || NMSStack_SetTag == null
+                || CraftStack_AsNMSCopy == null || CraftStack_SetItemMeta == null || BukkitStack_Meta == null || CraftMeta_UnhandledTags == null) {
+            throw new IllegalStateException("This version of Monolith is not compatible with this version of minecraft");
+        }
+    }
 
-            CraftStack_Handle.setAccessible(true);
-            NMSStack_Tag.setAccessible(true);
+    private static MethodHandle adapt(MethodHandle handle) {
+        if (handle == null)
+            return null;
 
-            // For plain old bukkit item stacks
-            ItemStack temp = new ItemStack(Material.STONE);
-            Class<?> metaClass = temp.getItemMeta().getClass();
+        return handle.asType(handle.type().erase());
+    }
 
-            BukkitStack_UnhandledTags = metaClass.getDeclaredField("unhandledTags");
-            BukkitStack_UnhandledTags.setAccessible(true);
-        } catch (NoSuchFieldException e) {
-            throw new IllegalStateException("This version of Monolith is not compatible with this version of minecraft", e);
-        }
+    private static IllegalStateException incompatible(Throwable e) {
+        if (e instanceof Error)
+            throw (Error) e;
+        return new IllegalStateException("This version of Monolith is not compatible with this version of minecraft", e);
     }
 
     private final ItemStack item;
-    private PropertyContainer properties;
+    private PropertyContainerImpl properties;
     private MonoItemAttributes attributes;
+    // Edits that have not been committed, created when first needed
+    private List<Edit> openEdits;
 
     /**
      * Creates a new MonoItemStack.
@@ -96,6 +140,11 @@ public class MonoItemStack extends ItemStack {
             throw new IllegalArgumentException("AIR cannot have properties");
         }
 
+        // Work on the real item so its fields can be accessed directly
+        if (item instanceof MonoItemStack) {
+            item = ((MonoItemStack) item).item;
+        }
+
         this.item = item;
     }
 
@@ -111,13 +160,35 @@ public class MonoItemStack extends ItemStack {
 
         // Create the properties if needed
         if (properties == null) {
-            NBTTagList list = getNBTList(PropertiesNBTKey);
-            properties = new PropertyContainerImpl(list);
+            properties = openProperties(openTags(), this::storeCompactProperties, () -> invalidateViews(null));
         }
 
         return properties;
     }
 
+    /**
+     * Sets whether properties are stored in the compact binary format
+     * (see {@link CompactPropertyFormat}) rather than as a list of compounds.
+     * Items are converted to the selected format when their properties are next changed.
+     * In the compact format every change made through {@link #getProperties()} encodes
+     * the whole list again, so use {@link #edit()} to make several changes at once.
+     *
+     * @param compact True to use the compact format
+     */
+    public static void setCompactProperties(boolean compact) {
+        compactProperties = compact;
+    }
+
+    /**
+     * Gets whether properties are stored in the compact binary format
+     *
+     * @return True if the compact format is used
+     * @see #setCompactProperties(boolean)
+     */
+    public static boolean isCompactProperties() {
+        return compactProperties;
+    }
+
     /**
      * Gets the item attributes for this item
      *
@@ -130,63 +201,535 @@ public class MonoItemStack extends ItemStack {
 
         if (attributes == null) {
             NBTTagList list = getNBTList(AttributesNBTKey);
-            attributes = new MonoItemAttributes(list);
+            attributes = new MonoItemAttributes(list, () -> invalidateViews(null));
         }
 
         return attributes;
     }
 
+    /**
+     * Gets the item attributes for this item, without adding an empty
+     * attribute list to items that have none.
+     *
+     * @return The ItemAttributes, or null if this item has no attribute modifiers
+     */
+    public ItemAttributes getAttributesIfPresent() {
+        if (attributes != null) {
+            return attributes;
+        }
+
+        NBTBase list;
+        if (craftItemStackClass.isInstance(item)) {
+            NBTTagCompound tag = peekHandleTag();
+            list = (tag == null ? null : tag.get(AttributesNBTKey));
+        } else {
+            list = new MetaTags(item).get(AttributesNBTKey);
+        }
+
+        if (list instanceof NBTTagList) {
+            attributes = new MonoItemAttributes((NBTTagList) list, () -> invalidateViews(null));
+            return attributes;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets a fingerprint of everything {@link #isSimilar(ItemStack)} compares:
+     * the type and the item meta, which includes the properties.
+     * Items that are similar always have the same fingerprint, so different
+     * fingerprints mean the items are not similar. Equal fingerprints are
+     * very likely, but not guaranteed, to be similar.
+     * <br>
+     * The fingerprint is a hash of the namespaced key of the type and the NBT
+     * of the item, so it is the same between restarts and server versions that
+     * store the item the same way. Server items are hashed from the NBT they
+     * hold, and plain Bukkit items from the NBT their meta would be written as.
+     * <br>
+     * The fingerprint is computed each time, since the wrapped item can be
+     * changed by other code. Callers comparing many items should compute each
+     * fingerprint once and keep it themselves, as {@link ItemFingerprintIndex} does.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        return computeFingerprint(item);
+    }
+
+    /**
+     * Gets the fingerprint of any item stack.
+     *
+     * @param stack The item stack, may be null
+     * @return The fingerprint
+     * @see #getFingerprint()
+     */
+    public static long fingerprint(ItemStack stack) {
+        if (stack == null) {
+            return 0;
+        } else if (stack instanceof MonoItemStack) {
+            return computeFingerprint(((MonoItemStack) stack).item);
+        } else {
+            return computeFingerprint(stack);
+        }
+    }
+
+    private static long computeFingerprint(ItemStack stack) {
+        Hasher hasher = FingerprintHash.newHasher();
+        hasher.putString(stack.getType().getKey().toString(), StandardCharsets.UTF_8);
+
+        NBTTagCompound tag;
+        if (craftItemStackClass.isInstance(stack)) {
+            // The server item already holds its NBT, so it is hashed in place
+            try {
+                Object handle = (Object) CraftStack_Handle.invokeExact((Object) stack);
+                tag = (handle == null ? null : (NBTTagCompound) (Object) NMSStack_GetTag.invokeExact(handle));
+            } catch (Throwable e) {
+                throw incompatible(e);
+            }
+        } else {
+            // No need to copy the meta to write it
+            ItemMeta meta;
+            try {
+                meta = (ItemMeta) (Object) BukkitStack_Meta.invokeExact((Object) stack);
+            } catch (Throwable e) {
+                throw incompatible(e);
+            }
+
+            // Empty meta is similar to no meta at all
+            tag = (meta == null || Bukkit.getItemFactory().equals(meta, null) ? null : writeMeta(stack.getType(), meta));
+        }
+
+        if (tag != null) {
+            hashItemTag(hasher, tag);
+        }
+
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Writes meta to NBT the way the server saves it. Metas that are equal
+     * give the same NBT, apart from the order of lists they compare as sets.
+     */
+    private static NBTTagCompound writeMeta(Material type, ItemMeta meta) {
+        try {
+            Object handle = CraftStack_AsNMSCopy.invokeExact((Object) new ItemStack(type));
+            boolean applied = (boolean) CraftStack_SetItemMeta.invokeExact(handle, (Object) meta);
+            return (applied ? (NBTTagCompound) (Object) NMSStack_GetTag.invokeExact(handle) : null);
+        } catch (Throwable e) {
+            throw incompatible(e);
+        }
+    }
+
+    /**
+     * Hashes the root tag of an item. Undamaged items that can be damaged hold
+     * Damage:0 without having any meta, so it is left out, and nothing is hashed
+     * when no other key remains.
+     */
+    private static void hashItemTag(Hasher hasher, NBTTagCompound tag) {
+        List<String> keys = new ArrayList<>(tag.getKeys());
+        NBTBase damage = tag.get("Damage");
+        if (damage instanceof NBTNumber && ((NBTNumber) damage).asLong() == 0) {
+            keys.remove("Damage");
+        }
+
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        hashCompound(hasher, tag, keys);
+    }
+
+    private static void hashCompound(Hasher hasher, NBTTagCompound compound, List<String> keys) {
+        Collections.sort(keys);
+
+        hasher.putByte(compound.getTypeId());
+        hasher.putInt(keys.size());
+        for (String key : keys) {
+            hasher.putString(key, StandardCharsets.UTF_8);
+            hashTag(hasher, compound.get(key));
+        }
+    }
+
+    /**
+     * Hashes NBT independently of the order of compound keys and list elements
+     */
+    private static void hashTag(Hasher hasher, NBTBase tag) {
+        if (tag instanceof NBTTagCompound) {
+            NBTTagCompound compound = (NBTTagCompound) tag;
+            hashCompound(hasher, compound, new ArrayList<>(compound.getKeys()));
+            return;
+        }
+
+        hasher.putByte(tag.getTypeId());
+        if (tag instanceof NBTTagList) {
+            // Meta compares some lists, like enchantments, without regard to order
+            long sum = 0;
+            for (NBTBase element : (NBTTagList) tag) {
+                Hasher elementHasher = FingerprintHash.newHasher();
+                hashTag(elementHasher, element);
+                sum += elementHasher.hash().asLong();
+            }
+
+            hasher.putInt(((NBTTagList) tag).size());
+            hasher.putLong(sum);
+        } else if (tag instanceof NBTTagFloat || tag instanceof NBTTagDouble) {
+            // The type id is already hashed, so widening cannot collide
+            hasher.putDouble(((NBTNumber) tag).asDouble());
+        } else if (tag instanceof NBTNumber) {
+            hasher.putLong(((NBTNumber) tag).asLong());
+        } else if (tag instanceof NBTTagString) {
+            hasher.putString(tag.asString(), StandardCharsets.UTF_8);
+        } else if (tag instanceof NBTTagByteArray) {
+            byte[] values = ((NBTTagByteArray) tag).getBytes();
+            hasher.putInt(values.length);
+            hasher.putBytes(values);
+        } else if (tag instanceof NBTTagIntArray) {
+            int[] values = ((NBTTagIntArray) tag).getInts();
+            hasher.putInt(values.length);
+            for (int value : values) {
+                hasher.putInt(value);
+            }
+        } else if (tag instanceof NBTTagLongArray) {
+            long[] values = ((NBTTagLongArray) tag).getLongs();
+            hasher.putInt(values.length);
+            for (long value : values) {
+                hasher.putLong(value);
+            }
+        }
+    }
+
+    /**
+     * Starts a batch of changes to the properties and attributes of this item.
+     * Changes are made to the item as they happen, except that properties in the
+     * compact format are only encoded once, when {@link Edit#commit()} is called.
+     *
+     * @return A new edit
+     */
+    public Edit edit() {
+        if (getType() == Material.AIR) {
+            throw new UnsupportedOperationException("AIR cannot have properties");
+        }
+
+        Edit edit = new Edit();
+        if (openEdits == null) {
+            openEdits = new ArrayList<>(1);
+        }
+        openEdits.add(edit);
+        return edit;
+    }
+
+    /**
+     * Views of the same tags are indexed separately, so when one changes the
+     * others must drop their indexes.
+     *
+     * @param source The edit that made the change, or null if it was made through the item
+     */
+    private void invalidateViews(Edit source) {
+        if (source != null) {
+            if (properties != null) {
+                properties.invalidate();
+            }
+            if (attributes != null) {
+                attributes.invalidate();
+            }
+        }
+
+        if (openEdits != null) {
+            for (Edit edit : openEdits) {
+                if (edit != source) {
+                    edit.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of changes to the properties and attributes of this item.
+     *
+     * @param changes A function to make the changes
+     * @see #edit()
+     */
+    public void edit(Consumer<? super Edit> changes) {
+        Edit edit = edit();
+        changes.accept(edit);
+        edit.commit();
+    }
+
     private NBTTagList getNBTList(String key) {
+        return getNBTList(openTags(), key);
+    }
+
+    private Tags openTags() {
+        if (craftItemStackClass.isInstance(item)) {
+            return new CompoundTags(getHandleTag());
+        } else {
+            return new MetaTags(item);
+        }
+    }
+
+    private NBTTagCompound peekHandleTag() {
         try {
-            NBTTagList list;
+            Object handle = (Object) CraftStack_Handle.invokeExact((Object) item);
+            return (NBTTagCompound) (Object) NMSStack_GetTag.invokeExact(handle);
+        } catch (Throwable e) {
+            throw incompatible(e);
+        }
+    }
 
+    private NBTTagCompound getHandleTag() {
+        try {
             // CraftItemStack just uses the thing directly
-            if (craftItemStackClass.isInstance(item)) {
-                Object handle = CraftStack_Handle.get(item);
-                Object rawTag = NMSStack_Tag.get(handle);
+            Object handle = (Object) CraftStack_Handle.invokeExact((Object) item);
+            NBTTagCompound tag = (NBTTagCompound) (Object) NMSStack_GetTag.invokeExact(handle);
 
-                NBTTagCompound tag = (NBTTagCompound) rawTag;
+            if (tag == null) {
+                tag = new NBTTagCompound();
+                NMSStack_SetTag.invokeExact(handle, (Object) tag);
+            }
 
-                if (tag == null) {
-                    tag = new NBTTagCompound();
-                    NMSStack_Tag.set(handle, tag);
-                }
+            return tag;
+        } catch (Throwable e) {
+            throw incompatible(e);
+        }
+    }
+
+    private static NBTTagList getNBTList(Tags tags, String key) {
+        NBTBase rawTag = tags.get(key);
+        if (rawTag instanceof NBTTagList) {
+            return (NBTTagList) rawTag;
+        }
+
+        NBTTagList list = new NBTTagList();
+        tags.put(key, list);
+        return list;
+    }
 
-                if (tag.hasKeyOfType(key, 9)) {
-                    list = tag.getList(key, 10);
-                } else {
-                    list = new NBTTagList();
-                    tag.set(key, list);
+    /**
+     * Opens the properties in whichever format they are stored.
+     * Reading never writes to the item, they are migrated to the selected
+     * format the first time they are changed.
+     *
+     * @param tags            The tags of the item
+     * @param onCompactChange Called with the property list when a compact container is changed
+     * @param onChange        Called after any change
+     * @return The properties
+     */
+    private static PropertyContainerImpl openProperties(Tags tags, Consumer<NBTTagList> onCompactChange, Runnable onChange) {
+        NBTBase compact = tags.get(CompactPropertiesNBTKey);
+        NBTBase legacy = tags.get(PropertiesNBTKey);
+
+        NBTTagList list;
+        if (compact instanceof NBTTagByteArray) {
+            list = CompactPropertyFormat.decode(((NBTTagByteArray) compact).getBytes());
+        } else if (legacy instanceof NBTTagList) {
+            list = (NBTTagList) legacy;
+        } else {
+            // Nothing is stored yet, so the list is only attached once something is written
+            list = new NBTTagList();
+        }
+
+        if (!compactProperties) {
+            return new PropertyContainerImpl(list, () -> {
+                if (tags.get(PropertiesNBTKey) != list) {
+                    tags.put(PropertiesNBTKey, list);
                 }
-            }
-            // Bukkit item stack needs to use the item meta
-            else {
-                ItemMeta meta = item.getItemMeta();
-                @SuppressWarnings("unchecked")
-                Map<String, NBTBase> tags = (Map<String, NBTBase>) BukkitStack_UnhandledTags.get(meta);
-
-                if (tags.containsKey(key)) {
-                    NBTBase rawTag = tags.get(key);
-                    if (rawTag instanceof NBTTagList) {
-                        list = (NBTTagList) rawTag;
-                    } else {
-                        list = new NBTTagList();
-                        tags.put(key, list);
+                if (tags.get(CompactPropertiesNBTKey) != null) {
+                    tags.remove(CompactPropertiesNBTKey);
+                }
+                onChange.run();
+            });
+        }
+
+        return new PropertyContainerImpl(list, () -> {
+            onCompactChange.accept(list);
+            onChange.run();
+        });
+    }
+
+    private void storeCompactProperties(NBTTagList list) {
+        storeCompactProperties(openTags(), list);
+    }
+
+    private static void storeCompactProperties(Tags tags, NBTTagList list) {
+        tags.put(CompactPropertiesNBTKey, new NBTTagByteArray(CompactPropertyFormat.encode(list)));
+        if (tags.get(PropertiesNBTKey) != null) {
+            tags.remove(PropertiesNBTKey);
+        }
+    }
+
+    /**
+     * The tags of either an NMS item or an item meta
+     */
+    private interface Tags {
+        NBTBase get(String key);
+
+        void put(String key, NBTBase value);
+
+        void remove(String key);
+    }
+
+    private static class CompoundTags implements Tags {
+        private final NBTTagCompound tag;
+
+        CompoundTags(NBTTagCompound tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public NBTBase get(String key) {
+            return tag.get(key);
+        }
+
+        @Override
+        public void put(String key, NBTBase value) {
+            tag.set(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            tag.remove(key);
+        }
+    }
+
+    /**
+     * The unhandled tags of the meta held by a plain Bukkit item stack.
+     * The meta is used in place rather than copied, and is only created
+     * once something is written.
+     */
+    private static class MetaTags implements Tags {
+        private final ItemStack item;
+
+        MetaTags(ItemStack item) {
+            this.item = item;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, NBTBase> getTags(boolean create) {
+            try {
+                Object meta = (Object) BukkitStack_Meta.invokeExact((Object) item);
+                if (meta == null) {
+                    if (!create) {
+                        return null;
                     }
-                } else {
-                    list = new NBTTagList();
-                    tags.put(key, list);
+
+                    item.setItemMeta(item.getItemMeta());
+                    meta = (Object) BukkitStack_Meta.invokeExact((Object) item);
                 }
 
-                item.setItemMeta(meta);
+                return (Map<String, NBTBase>) (Object) CraftMeta_UnhandledTags.invokeExact(meta);
+            } catch (Throwable e) {
+                throw incompatible(e);
             }
+        }
+
+        @Override
+        public NBTBase get(String key) {
+            Map<String, NBTBase> tags = getTags(false);
+            return tags == null ? null : tags.get(key);
+        }
+
+        @Override
+        public void put(String key, NBTBase value) {
+            getTags(true).put(key, value);
+        }
 
-            return list;
-        } catch (IllegalAccessException e) {
-            throw new IllegalStateException("This version of Monolith is not compatible with this version of minecraft", e);
+        @Override
+        public void remove(String key) {
+            Map<String, NBTBase> tags = getTags(false);
+            if (tags != null) {
+                tags.remove(key);
+            }
         }
     }
 
+    /**
+     * A batch of changes to a {@link MonoItemStack}.
+     * Properties in the compact format are not written back until
+     * {@link #commit()} is called.
+     */
+    public final class Edit {
+        private final Tags tags;
+
+        private PropertyContainerImpl editProperties;
+        private MonoItemAttributes editAttributes;
+        private boolean propertiesChanged;
+        private boolean committed;
+
+        private Edit() {
+            tags = openTags();
+        }
+
+        private void checkOpen() {
+            Validate.isTrue(!committed, "This edit has already been committed");
+        }
+
+        private void onPropertiesChanged(NBTTagList list) {
+            // Once committed the properties belong to the item
+            if (committed) {
+                storeCompactProperties(list);
+            } else {
+                propertiesChanged = true;
+            }
+        }
+
+        /**
+         * Gets the properties being edited
+         *
+         * @return The properties
+         */
+        public PropertyContainer getProperties() {
+            if (editProperties == null) {
+                checkOpen();
+                editProperties = openProperties(tags, this::onPropertiesChanged, () -> invalidateViews(committed ? null : this));
+            }
+
+            return editProperties;
+        }
+
+        /**
+         * Gets the attributes being edited
+         *
+         * @return The ItemAttributes
+         */
+        public ItemAttributes getAttributes() {
+            if (editAttributes == null) {
+                checkOpen();
+                editAttributes = new MonoItemAttributes(getNBTList(tags, AttributesNBTKey), () -> invalidateViews(committed ? null : this));
+            }
+
+            return editAttributes;
+        }
+
+        private void invalidate() {
+            if (editProperties != null) {
+                editProperties.invalidate();
+            }
+            if (editAttributes != null) {
+                editAttributes.invalidate();
+            }
+        }
+
+        /**
+         * Writes the changes back to the item.
+         * This edit cannot be used after it has been committed.
+         */
+        public void commit() {
+            checkOpen();
+            committed = true;
+            openEdits.remove(this);
+
+            if (propertiesChanged) {
+                storeCompactProperties(tags, editProperties.getRoot());
+            }
+
+            if (editProperties != null) {
+                properties = editProperties;
+            }
+            if (editAttributes != null) {
+                attributes = editAttributes;
+            }
+        }
+    }
 
     @Override
     public ItemStack clone() {
@@ -253,6 +796,7 @@ public class MonoItemStack extends ItemStack {
     public boolean setItemMeta(ItemMeta itemMeta) {
         if (item.setItemMeta(itemMeta)) {
             properties = null;
+            attributes = null;
             return true;
         } else {
             return false;
@@ -29,6 +29,7 @@ import org.bukkit.entity.Player;
 public class MonoPlayer {
     private static final HashMap<Player, MonoPlayer> mPlayers = new HashMap<>();
     private final Player mPlayer;
+    private EquipmentAttributes mEquipment;
 
     private MonoPlayer(Player player) {
         mPlayer = player;
@@ -44,6 +45,10 @@ public class MonoPlayer {
         return mplayer;
     }
 
+    static MonoPlayer findPlayer(Player player) {
+        return mPlayers.get(player);
+    }
+
     public Player getPlayer() {
         return mPlayer;
     }
@@ -52,6 +57,25 @@ public class MonoPlayer {
         return mPlayer.getLocale();
     }
 
+    /**
+     * Gets the combined attribute modifiers of everything this player has equipped.
+     * This is kept up to date as the player changes their own equipment. Code that
+     * changes it directly must call {@link EquipmentAttributes#invalidate()}.
+     *
+     * @return The equipment attributes
+     */
+    public EquipmentAttributes getEquipmentAttributes() {
+        if (mEquipment == null)
+            mEquipment = new EquipmentAttributes(mPlayer);
+
+        return mEquipment;
+    }
+
+    void onEquipmentChanged() {
+        if (mEquipment != null)
+            mEquipment.invalidate();
+    }
+
 
     protected void onDestroy() {
         mPlayers.remove(mPlayer);
@@ -22,9 +22,13 @@
 
 package au.com.addstar.monolith;
 
+import au.com.addstar.monolith.command.ArgumentParsers;
+import au.com.addstar.monolith.command.CommandWorkers;
 import au.com.addstar.monolith.internal.GeSuitHandler;
 import au.com.addstar.monolith.lookup.Lookup;
 import au.com.addstar.monolith.util.Crafty;
+import au.com.addstar.monolith.util.LineOfSight;
+import au.com.addstar.monolith.virtual.VirtualEntityManager;
 import net.kyori.adventure.platform.AudienceProvider;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
 import net.kyori.adventure.text.Component;
@@ -46,6 +50,8 @@ public class Monolith extends JavaPlugin {
     private static Monolith mInstance;
     public Boolean DebugMode = false;
     private GeSuitHandler mGeSuitHandler;
+    private LineOfSight mLineOfSight;
+    private VirtualEntityManager mVirtualEntities;
 
     public final AudienceProvider getAudienceProvider() {
         return audienceProvider;
@@ -143,20 +149,54 @@ public class Monolith extends JavaPlugin {
         Lookup.initialize(this);
         audienceProvider = BukkitAudiences.create(this);
         Bukkit.getPluginManager().registerEvents(new Listeners(), this);
+        ArgumentParsers.updateOnlinePlayers(null);
         try {
             getCommand("monolith").setExecutor(new MonolithCommand(this));
         } catch (NullPointerException e) {
             e.printStackTrace();
         }
         mGeSuitHandler = new GeSuitHandler(this);
+        mLineOfSight = new LineOfSight(this);
+        mLineOfSight.launchTickTask();
+        mVirtualEntities = new VirtualEntityManager(this);
+        mVirtualEntities.launchTickTask();
         getLogger().info("enabled");
 
     }
 
+    @Override
+    public void onDisable() {
+        // Removes virtual entities from clients, which would otherwise keep them
+        if (mVirtualEntities != null)
+            mVirtualEntities.stopTickTask();
+        if (mLineOfSight != null)
+            mLineOfSight.stopTickTask();
+        CommandWorkers.shutdown();
+    }
+
     public GeSuitHandler getGeSuitHandler() {
         return mGeSuitHandler;
     }
 
+    /**
+     * Gets the shared line of sight cache. Sharing it between plugins
+     * lets them reuse each other's checks within a tick.
+     *
+     * @return the line of sight service
+     */
+    public LineOfSight getLineOfSight() {
+        return mLineOfSight;
+    }
+
+    /**
+     * Gets the manager for packet-only entities shown to nearby players.
+     *
+     * @return the virtual entity manager
+     */
+    public VirtualEntityManager getVirtualEntities() {
+        return mVirtualEntities;
+    }
+
     public void DebugMsg(String msg) {
         if (DebugMode) {
             Bukkit.getLogger().info("[Monolith] " + msg);
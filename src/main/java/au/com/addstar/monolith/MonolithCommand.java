@@ -22,11 +22,17 @@
 
 package au.com.addstar.monolith;
 
+import au.com.addstar.monolith.command.CommandStats;
+import au.com.addstar.monolith.util.LineOfSight;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class MonolithCommand implements CommandExecutor {
     Monolith plugin;
 
@@ -57,6 +63,23 @@ public class MonolithCommand implements CommandExecutor {
                         + (Monolith.getInstance().DebugMode ? "ON" : "OFF"));
                 break;
 
+            case "LOS":
+                LineOfSight los = plugin.getLineOfSight();
+                sender.sendMessage(ChatColor.YELLOW + "Line of sight cache:");
+                sender.sendMessage(ChatColor.GREEN + "   Hits: " + los.getHits() + "  Misses: " + los.getMisses()
+                        + "  Hit rate: " + String.format("%.1f%%", los.getHitRate() * 100));
+                sender.sendMessage(ChatColor.GREEN + "   Invalidations: " + los.getInvalidations());
+                break;
+
+            case "COMMANDS":
+                if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                    CommandStats.resetAll();
+                    sender.sendMessage(ChatColor.GREEN + "Command statistics reset");
+                    break;
+                }
+                showCommandStats(sender);
+                break;
+
             default:
                 showMonolithHelp(sender);
                 break;
@@ -67,5 +90,31 @@ public class MonolithCommand implements CommandExecutor {
     private void showMonolithHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.YELLOW + "Monolith commands:");
         sender.sendMessage(ChatColor.GREEN + "   /monolith debug - Toggle debug");
+        sender.sendMessage(ChatColor.GREEN + "   /monolith los - Show line of sight cache stats");
+        sender.sendMessage(ChatColor.GREEN + "   /monolith commands [reset] - Show the slowest commands");
+    }
+
+    private void showCommandStats(CommandSender sender) {
+        List<CommandStats> all = CommandStats.getAll();
+        all.removeIf(stats -> stats.getInvocations() == 0 && stats.getAsyncInvocations() == 0);
+        all.sort(Comparator.comparingLong((CommandStats stats) -> stats.getTotalTime(TimeUnit.NANOSECONDS)).reversed());
+
+        sender.sendMessage(ChatColor.YELLOW + "Command timings (by total time, slow threshold "
+                + CommandStats.getSlowThreshold(TimeUnit.MILLISECONDS) + "ms):");
+        if (all.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "   No commands have been run");
+            return;
+        }
+
+        for (CommandStats stats : all.subList(0, Math.min(10, all.size()))) {
+            sender.sendMessage(ChatColor.GREEN + "   " + stats.getPath() + ChatColor.GRAY + String.format(
+                    " x%d avg %.2fms p95 %.2fms max %dms errors %d bad args %d limited %d",
+                    stats.getInvocations(), stats.getAverageMillis(), stats.getPercentileMillis(0.95),
+                    stats.getMaxTime(TimeUnit.MILLISECONDS), stats.getExceptions(), stats.getBadArguments(), stats.getRateLimited()));
+            if (stats.getAsyncInvocations() > 0) {
+                sender.sendMessage(ChatColor.GRAY + String.format("      async x%d total %dms max %dms",
+                        stats.getAsyncInvocations(), stats.getAsyncTotalTime(TimeUnit.MILLISECONDS), stats.getAsyncMaxTime(TimeUnit.MILLISECONDS)));
+            }
+        }
     }
 }
\ No newline at end of file
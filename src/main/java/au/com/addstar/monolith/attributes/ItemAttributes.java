@@ -26,6 +26,8 @@ import java.util.Collection;
 import java.util.UUID;
 
 import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeModifier.Operation;
+import org.bukkit.inventory.EquipmentSlot;
 
 /**
  * Represents attribute modifiers stored on an item
@@ -82,4 +84,28 @@ public interface ItemAttributes {
      * @return A collection of ItemAttributeModifier instances
      */
     Collection<ItemAttributeModifier> getModifiers(String name);
+
+    /**
+     * Gets the combined amount of all modifiers of the given attribute and operation
+     * that apply in a slot. Modifiers without a slot apply in every slot.
+     * For {@link Operation#MULTIPLY_SCALAR_1} this is the product of (1 + amount),
+     * otherwise it is the sum of the amounts.
+     *
+     * @param attribute The modified attribute
+     * @param operation The operation of the modifiers
+     * @param slot      The slot the item is in, or null for only the modifiers without a slot
+     * @return The total
+     */
+    double getTotal(Attribute attribute, Operation operation, EquipmentSlot slot);
+
+    /**
+     * Applies all modifiers of the given attribute that apply in a slot to a base value,
+     * in the same order as Minecraft does
+     *
+     * @param attribute The modified attribute
+     * @param base      The base value of the attribute
+     * @param slot      The slot the item is in, or null for only the modifiers without a slot
+     * @return The modified value
+     */
+    double getValue(Attribute attribute, double base, EquipmentSlot slot);
 }
@@ -22,8 +22,10 @@
 
 package au.com.addstar.monolith.attributes;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,13 +33,16 @@ import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeModifier.Operation;
 import org.bukkit.inventory.EquipmentSlot;
 
-import com.google.common.collect.Lists;
-
 import au.com.addstar.monolith.util.Attributes;
 import   net.minecraft.server.v1_16_R2.NBTBase;
 import   net.minecraft.server.v1_16_R2.NBTTagCompound;
 import   net.minecraft.server.v1_16_R2.NBTTagList;
 
+/**
+ * Attribute modifiers stored in a list of compounds. The list is indexed on first
+ * access and the indexes are updated by changes made through this object.
+ * Anything else that changes the list must call {@link #invalidate()}.
+ */
 public class MonoItemAttributes implements ItemAttributes {
     private static final String KeyUUID = "UUID";
     private static final String KeyAmount = "Amount";
@@ -46,10 +51,37 @@ public class MonoItemAttributes implements ItemAttributes {
     private static final String KeySlot = "Slot";
     private static final String KeyAttributeName = "AttributeName";
 
+    private static final int OperationCount = Operation.values().length;
+    // Index 0 holds the modifiers without a slot
+    private static final int SlotCount = EquipmentSlot.values().length + 1;
+
     private final NBTTagList list;
 
+    // Decoded modifiers in the same order as list, null where an entry is not a compound.
+    // Built on first access along with the indexes.
+    private ArrayList<Entry> entries;
+    private HashMap<UUID, ItemAttributeModifier> byId;
+    // Lists are replaced rather than changed, as they may have been handed out
+    private HashMap<String, List<ItemAttributeModifier>> byAttribute;
+    private HashMap<String, List<ItemAttributeModifier>> byName;
+    // Attribute id to totals, indexed by slot then operation
+    private HashMap<String, double[]> totals;
+
+    private final Runnable onChange;
+
     public MonoItemAttributes(NBTTagList list) {
+        this(list, null);
+    }
+
+    /**
+     * Creates attributes that report every change made through them
+     *
+     * @param list     The list of modifiers
+     * @param onChange Called after each change, or null
+     */
+    public MonoItemAttributes(NBTTagList list, Runnable onChange) {
         this.list = list;
+        this.onChange = onChange;
     }
 
     private static ItemAttributeModifier readModifier(NBTTagCompound tag) {
@@ -123,52 +155,186 @@ public class MonoItemAttributes implements ItemAttributes {
         return tag;
     }
 
+    /**
+     * Discards the indexes so they are rebuilt on next access. Must be called
+     * after the list is changed other than through this object.
+     */
+    public void invalidate() {
+        entries = null;
+    }
+
+    private void ensureIndexed() {
+        // The size check catches modifiers added or removed by plain list access
+        if (entries != null && entries.size() == list.size())
+            return;
+
+        entries = new ArrayList<>(list.size());
+        byId = new HashMap<>();
+        byAttribute = new HashMap<>();
+        byName = new HashMap<>();
+        totals = new HashMap<>();
+
+        for (NBTBase base : list) {
+            if (base instanceof NBTTagCompound) {
+                NBTTagCompound tag = (NBTTagCompound) base;
+                Entry entry = new Entry(tag.getString(KeyAttributeName), readModifier(tag));
+                entries.add(entry);
+
+                // Nothing has been handed out yet so the lists can be built in place
+                ItemAttributeModifier modifier = entry.modifier;
+                byId.putIfAbsent(modifier.getUniqueId(), modifier);
+                byAttribute.computeIfAbsent(entry.attributeId, k -> new ArrayList<>()).add(modifier);
+                byName.computeIfAbsent(modifier.getName(), k -> new ArrayList<>()).add(modifier);
+                addTotal(totals.computeIfAbsent(entry.attributeId, k -> newTotals()), modifier);
+            } else {
+                entries.add(null);
+            }
+        }
+    }
+
+    private void index(Entry entry) {
+        ItemAttributeModifier modifier = entry.modifier;
+        byId.putIfAbsent(modifier.getUniqueId(), modifier);
+        append(byAttribute, entry.attributeId, modifier);
+        append(byName, modifier.getName(), modifier);
+        addTotal(totals.computeIfAbsent(entry.attributeId, k -> newTotals()), modifier);
+    }
+
+    private void unindex(Entry entry) {
+        ItemAttributeModifier modifier = entry.modifier;
+        byId.remove(modifier.getUniqueId(), modifier);
+        without(byName, modifier.getName(), modifier);
+
+        List<ItemAttributeModifier> remaining = without(byAttribute, entry.attributeId, modifier);
+        if (remaining == null) {
+            totals.remove(entry.attributeId);
+        } else {
+            // Totals are summed again rather than undone, multiplying by zero cannot be reversed
+            double[] total = newTotals();
+            for (ItemAttributeModifier other : remaining)
+                addTotal(total, other);
+            totals.put(entry.attributeId, total);
+        }
+    }
+
+    private static void append(HashMap<String, List<ItemAttributeModifier>> map, String key, ItemAttributeModifier modifier) {
+        List<ItemAttributeModifier> current = map.get(key);
+        List<ItemAttributeModifier> updated = new ArrayList<>(current == null ? 1 : current.size() + 1);
+        if (current != null)
+            updated.addAll(current);
+        updated.add(modifier);
+        map.put(key, updated);
+    }
+
+    /**
+     * Replaces the list under key with one that does not hold modifier
+     *
+     * @return The new list, or null if it would be empty
+     */
+    private static List<ItemAttributeModifier> without(HashMap<String, List<ItemAttributeModifier>> map, String key, ItemAttributeModifier modifier) {
+        List<ItemAttributeModifier> current = map.get(key);
+        if (current == null)
+            return null;
+
+        List<ItemAttributeModifier> updated = new ArrayList<>(current.size());
+        for (ItemAttributeModifier other : current) {
+            if (other != modifier)
+                updated.add(other);
+        }
+
+        if (updated.isEmpty()) {
+            map.remove(key);
+            return null;
+        }
+
+        map.put(key, updated);
+        return updated;
+    }
+
+    private static void addTotal(double[] total, ItemAttributeModifier modifier) {
+        int index = totalIndex(modifier.getSlot(), modifier.getOperation());
+        if (modifier.getOperation() == Operation.MULTIPLY_SCALAR_1)
+            total[index] *= 1 + modifier.getAmount();
+        else
+            total[index] += modifier.getAmount();
+    }
+
+    private void changed() {
+        if (onChange != null)
+            onChange.run();
+    }
+
+    private static double[] newTotals() {
+        double[] total = new double[SlotCount * OperationCount];
+        for (int slot = 0; slot < SlotCount; ++slot)
+            total[slot * OperationCount + Operation.MULTIPLY_SCALAR_1.ordinal()] = 1;
+        return total;
+    }
+
+    private static int totalIndex(EquipmentSlot slot, Operation operation) {
+        int slotIndex = (slot == null ? 0 : slot.ordinal() + 1);
+        return slotIndex * OperationCount + operation.ordinal();
+    }
+
+    private void removeAt(int index) {
+        list.remove(index);
+        unindex(entries.remove(index));
+    }
+
     @Override
     public void addModifier(Attribute attribute, ItemAttributeModifier modifier) {
+        ensureIndexed();
+
         // Check that the UUID is unique
-        for (NBTBase aList : list) {
-            if (aList instanceof NBTTagCompound) {
-                NBTTagCompound tag = (NBTTagCompound) aList;
-                if (modifier.getUniqueId().equals(tag.a(KeyUUID)))
-                    throw new IllegalArgumentException("UUID must be unique across all modifiers");
-            }
-        }
+        if (byId.containsKey(modifier.getUniqueId()))
+            throw new IllegalArgumentException("UUID must be unique across all modifiers");
 
         // Add the modifier
         NBTTagCompound modifierTag = saveModifier(attribute, modifier);
+        Entry entry = new Entry(Attributes.getId(attribute), modifier);
         list.add(modifierTag);
+        entries.add(entry);
+        index(entry);
+        changed();
     }
 
     @Override
     public void removeModifier(ItemAttributeModifier modifier) {
-        // Find the modifier
-        for (int i = 0; i < list.size(); ++i) {
-            if (list.get(i) instanceof NBTTagCompound) {
-                NBTTagCompound tag = (NBTTagCompound) list.get(i);
-                if (modifier.getUniqueId().equals(tag.a(KeyUUID))) {
-                    // Remove it
-                    list.remove(i);
-                    break;
-                }
-            }
+        ensureIndexed();
+        if (!byId.containsKey(modifier.getUniqueId()))
+            return;
+
+        // Remove every copy, in case the list was written elsewhere with duplicates
+        for (int i = entries.size() - 1; i >= 0; --i) {
+            Entry entry = entries.get(i);
+            if (entry != null && modifier.getUniqueId().equals(entry.modifier.getUniqueId()))
+                removeAt(i);
         }
+
+        changed();
     }
 
     @Override
     public void clearModifiers(Attribute attribute) {
         String id = Attributes.getId(attribute);
+        ensureIndexed();
+        if (!byAttribute.containsKey(id))
+            return;
 
-        for (int i = 0; i < list.size(); ++i) {
-            if (list.get(i) instanceof NBTTagCompound) {
-
-                NBTTagCompound tag = (NBTTagCompound) list.get(i);
-                if (id.equals(tag.getString(KeyAttributeName))) {
-                    // Remove it
-                    list.remove(i);
-                    --i;
-                }
+        for (int i = entries.size() - 1; i >= 0; --i) {
+            Entry entry = entries.get(i);
+            if (entry != null && entry.attributeId.equals(id)) {
+                // The whole attribute goes, so its list and totals are dropped below
+                list.remove(i);
+                entries.remove(i);
+                byId.remove(entry.modifier.getUniqueId(), entry.modifier);
+                without(byName, entry.modifier.getName(), entry.modifier);
             }
         }
+
+        byAttribute.remove(id);
+        totals.remove(id);
+        changed();
     }
 
     @Override
@@ -176,48 +342,69 @@ public class MonoItemAttributes implements ItemAttributes {
         if (list.size() > 0) {
             list.subList(0, list.size()).clear();
         }
+
+        entries = new ArrayList<>();
+        byId = new HashMap<>();
+        byAttribute = new HashMap<>();
+        byName = new HashMap<>();
+        totals = new HashMap<>();
+        changed();
     }
 
     @Override
     public ItemAttributeModifier getModifier(UUID id) {
-        for (NBTBase aList : list) {
-            if (aList instanceof NBTTagCompound) {
-                NBTTagCompound tag = (NBTTagCompound) aList;
-                if (id.equals(tag.a(KeyUUID)))
-                    return readModifier(tag);
-            }
-        }
-
-        return null;
+        ensureIndexed();
+        return byId.get(id);
     }
 
     @Override
     public Collection<ItemAttributeModifier> getModifiers(String name) {
-        List<ItemAttributeModifier> modifiers = Lists.newArrayList();
+        ensureIndexed();
+        return unmodifiable(byName.get(name));
+    }
 
-        modifyModifier(name, modifiers, KeyName);
+    @Override
+    public Collection<ItemAttributeModifier> getModifiers(Attribute attribute) {
+        ensureIndexed();
+        return unmodifiable(byAttribute.get(Attributes.getId(attribute)));
+    }
 
+    private static Collection<ItemAttributeModifier> unmodifiable(List<ItemAttributeModifier> modifiers) {
+        if (modifiers == null)
+            return Collections.emptyList();
         return Collections.unmodifiableList(modifiers);
     }
 
     @Override
-    public Collection<ItemAttributeModifier> getModifiers(Attribute attribute) {
-        String id = Attributes.getId(attribute);
-        List<ItemAttributeModifier> modifiers = Lists.newArrayList();
+    public double getTotal(Attribute attribute, Operation operation, EquipmentSlot slot) {
+        ensureIndexed();
+        double[] total = totals.get(Attributes.getId(attribute));
+        boolean multiply = (operation == Operation.MULTIPLY_SCALAR_1);
+        if (total == null)
+            return multiply ? 1 : 0;
 
-        modifyModifier(id, modifiers, KeyAttributeName);
+        double any = total[totalIndex(null, operation)];
+        if (slot == null)
+            return any;
 
-        return Collections.unmodifiableList(modifiers);
+        double specific = total[totalIndex(slot, operation)];
+        return multiply ? any * specific : any + specific;
     }
 
-    private void modifyModifier(String id, List<ItemAttributeModifier> modifiers, String keyAttributeName) {
-        for (NBTBase aList : list) {
-            if (aList instanceof NBTTagCompound) {
-                NBTTagCompound tag = (NBTTagCompound) aList;
-                if (id.equals(tag.getString(keyAttributeName)))
-                    modifiers.add(readModifier(tag));
-            }
-        }
+    @Override
+    public double getValue(Attribute attribute, double base, EquipmentSlot slot) {
+        return (base + getTotal(attribute, Operation.ADD_NUMBER, slot))
+                * (1 + getTotal(attribute, Operation.ADD_SCALAR, slot))
+                * getTotal(attribute, Operation.MULTIPLY_SCALAR_1, slot);
     }
 
+    private static class Entry {
+        final String attributeId;
+        final ItemAttributeModifier modifier;
+
+        Entry(String attributeId, ItemAttributeModifier modifier) {
+            this.attributeId = attributeId;
+            this.modifier = modifier;
+        }
+    }
 }
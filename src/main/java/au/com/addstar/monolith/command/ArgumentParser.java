@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses a single command argument into a typed value.
+ * Implementations must be thread safe so they can be used for asynchronous tab completion.
+ *
+ * @param <T> The type of value produced
+ */
+public interface ArgumentParser<T> {
+    /**
+     * Parses an argument
+     *
+     * @param value The argument text
+     * @return The parsed value
+     * @throws IllegalArgumentException Thrown if the value cannot be parsed. The message is shown to the sender
+     */
+    T parse(String value) throws IllegalArgumentException;
+
+    /**
+     * Gets the possible values for an argument being typed
+     *
+     * @param prefix What has been typed so far
+     * @return The matching values
+     */
+    default List<String> complete(String prefix) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
+
+import com.google.common.collect.Sets;
+
+import au.com.addstar.monolith.lookup.EntityDefinition;
+import au.com.addstar.monolith.lookup.Lookup;
+import au.com.addstar.monolith.util.Parser;
+
+/**
+ * The registry of {@link ArgumentParser}s by the type they produce.
+ * Parsers for common types are built in, and any enum type is handled by {@link EnumParser}.
+ */
+public final class ArgumentParsers {
+    private static final ConcurrentHashMap<Class<?>, ArgumentParser<?>> Parsers = new ConcurrentHashMap<>();
+    // Completion may run off the main thread, where the live player list must not be iterated
+    private static volatile String[] OnlinePlayers = new String[0];
+
+    static {
+        register(String.class, value -> value);
+        // Plain decimal, as Parser.parseInteger reads a leading 0 as octal. Out of range values are rejected
+        registerPrimitive(Integer.class, int.class, value -> {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a whole number between " + Integer.MIN_VALUE + " and " + Integer.MAX_VALUE);
+            }
+        });
+        registerPrimitive(Long.class, long.class, value -> {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a whole number");
+            }
+        });
+        registerPrimitive(Double.class, double.class, value -> {
+            try {
+                return Double.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number");
+            }
+        });
+        registerPrimitive(Float.class, float.class, value -> {
+            try {
+                return Float.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number");
+            }
+        });
+        registerPrimitive(Boolean.class, boolean.class, new ArgumentParser<Boolean>() {
+            private final String[] mNames = {"false", "true"};
+
+            @Override
+            public Boolean parse(String value) {
+                return Parser.parseBoolean(value);
+            }
+
+            @Override
+            public List<String> complete(String prefix) {
+                return matchSorted(mNames, prefix);
+            }
+        });
+
+        register(Material.class, new LookupParser<Material>(() -> {
+            Collection<String> names = Sets.newHashSet(Lookup.getAllItemNames());
+            for (Material material : Material.values()) {
+                if (!material.isLegacy())
+                    names.add(material.name().toLowerCase(Locale.ROOT));
+            }
+            return names;
+        }) {
+            @Override
+            public Material parse(String value) {
+                return Parser.parseMaterialName(value);
+            }
+        });
+        register(EntityDefinition.class, new LookupParser<EntityDefinition>(Lookup::getAllEntityNames) {
+            @Override
+            public EntityDefinition parse(String value) {
+                EntityDefinition def = Lookup.findEntityByName(value);
+                if (def == null)
+                    throw new IllegalArgumentException("Unknown entity " + value);
+                return def;
+            }
+        });
+        register(EntityType.class, new LookupParser<EntityType>(Lookup::getAllEntityNames) {
+            @Override
+            public EntityType parse(String value) {
+                EntityDefinition def = Lookup.findEntityByName(value);
+                if (def == null)
+                    throw new IllegalArgumentException("Unknown entity " + value);
+                return def.getType();
+            }
+        });
+        register(Enchantment.class, new LookupParser<Enchantment>(Lookup::getAllEnchantmentNames) {
+            @Override
+            public Enchantment parse(String value) {
+                Enchantment enchantment = Lookup.findEnchantmentByName(value);
+                if (enchantment == null)
+                    throw new IllegalArgumentException("Unknown enchantment " + value);
+                return enchantment;
+            }
+        });
+        register(Player.class, new ArgumentParser<Player>() {
+            @Override
+            public Player parse(String value) {
+                Player player = Bukkit.getPlayer(value);
+                if (player == null)
+                    throw new IllegalArgumentException("Unknown player " + value);
+                return player;
+            }
+
+            @Override
+            public List<String> complete(String prefix) {
+                String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+                List<String> names = new ArrayList<>();
+                for (String name : OnlinePlayers) {
+                    if (name.toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+                        names.add(name);
+                }
+                return names;
+            }
+        });
+        register(Vector.class, Parser::parseVector);
+    }
+
+    private ArgumentParsers() {
+    }
+
+    /**
+     * Registers the parser for a type, replacing any existing one
+     *
+     * @param type   The type produced
+     * @param parser The parser
+     * @param <T>    The type produced
+     */
+    public static <T> void register(Class<T> type, ArgumentParser<T> parser) {
+        Parsers.put(type, parser);
+    }
+
+    private static <T> void registerPrimitive(Class<T> type, Class<?> primitive, ArgumentParser<T> parser) {
+        Parsers.put(type, parser);
+        Parsers.put(primitive, parser);
+    }
+
+    /**
+     * Gets the parser for a type
+     *
+     * @param type The type to parse
+     * @param <T>  The type to parse
+     * @return The parser
+     * @throws IllegalArgumentException Thrown if no parser is registered for the type
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> ArgumentParser<T> get(Class<T> type) throws IllegalArgumentException {
+        ArgumentParser<?> parser = Parsers.get(type);
+        if (parser == null && type.isEnum())
+            parser = Parsers.computeIfAbsent(type, t -> EnumParser.of((Class) t));
+
+        if (parser == null)
+            throw new IllegalArgumentException("No argument parser is registered for " + type.getName());
+
+        return (ArgumentParser<T>) parser;
+    }
+
+    /**
+     * Refreshes the player names used to complete {@link Player} arguments.
+     * Monolith calls this on the main thread as players join and leave.
+     *
+     * @param leaving A player who is leaving but still listed as online, or null
+     */
+    public static void updateOnlinePlayers(Player leaving) {
+        OnlinePlayers = Bukkit.getOnlinePlayers().stream()
+                .filter(player -> player != leaving)
+                .map(Player::getName)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Finds the names starting with a prefix, ignoring case
+     *
+     * @param sortedNames Lowercase names in sorted order
+     * @param prefix      The prefix to match
+     * @return A new list of the matching names
+     */
+    public static List<String> matchSorted(String[] sortedNames, String prefix) {
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        int index = Arrays.binarySearch(sortedNames, lowerPrefix);
+        if (index < 0)
+            index = -(index + 1);
+
+        int end = index;
+        while (end < sortedNames.length && sortedNames[end].startsWith(lowerPrefix))
+            ++end;
+
+        // Callers may sort or add to the results
+        return new ArrayList<>(Arrays.asList(sortedNames).subList(index, end));
+    }
+
+    /**
+     * A parser completing from one of the {@link Lookup} name tables.
+     * The names are sorted once, the first time they are needed.
+     */
+    private abstract static class LookupParser<T> implements ArgumentParser<T> {
+        private final Supplier<Collection<String>> mSource;
+        private volatile String[] mNames;
+
+        LookupParser(Supplier<Collection<String>> source) {
+            mSource = source;
+        }
+
+        @Override
+        public List<String> complete(String prefix) {
+            String[] names = mNames;
+            if (names == null) {
+                names = mSource.get().stream()
+                        .map(name -> name.toLowerCase(Locale.ROOT))
+                        .distinct()
+                        .sorted()
+                        .toArray(String[]::new);
+                mNames = names;
+            }
+
+            return matchSorted(names, prefix);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import com.google.common.collect.Sets;
+
+import au.com.addstar.monolith.util.Crafty;
+
+/**
+ * Delivers tab completions for a {@link RootCommandDispatcher} through Paper's
+ * AsyncTabCompleteEvent, which fires before the server looks at the main thread.
+ * The event is found reflectively so nothing happens on plain Spigot, and commands
+ * that cannot complete asynchronously are left for the normal synchronous path.
+ */
+final class AsyncTabCompleteBridge implements Listener {
+    private static final Class<? extends Event> EventClass;
+    private static final MethodHandle Event_GetSender;
+    private static final MethodHandle Event_GetBuffer;
+    private static final MethodHandle Event_IsCommand;
+    private static final MethodHandle Event_IsHandled;
+    private static final MethodHandle Event_SetHandled;
+    private static final MethodHandle Event_SetCompletions;
+
+    static {
+        Class<?> eventClass = Crafty.findClass("com.destroystokyo.paper.event.server.AsyncTabCompleteEvent");
+        Event_GetSender = Crafty.findMethod(eventClass, "getSender", CommandSender.class);
+        Event_GetBuffer = Crafty.findMethod(eventClass, "getBuffer", String.class);
+        Event_IsCommand = Crafty.findMethod(eventClass, "isCommand", boolean.class);
+        Event_IsHandled = Crafty.findMethod(eventClass, "isHandled", boolean.class);
+        Event_SetHandled = Crafty.findMethod(eventClass, "setHandled", void.class, boolean.class);
+        Event_SetCompletions = Crafty.findMethod(eventClass, "setCompletions", void.class, List.class);
+
+        if (eventClass != null && Event.class.isAssignableFrom(eventClass) && Event_GetSender != null && Event_GetBuffer != null
+                && Event_IsCommand != null && Event_IsHandled != null && Event_SetHandled != null && Event_SetCompletions != null)
+            EventClass = eventClass.asSubclass(Event.class);
+        else
+            EventClass = null;
+    }
+
+    private final RootCommandDispatcher dispatcher;
+    private final Set<String> labels;
+
+    private AsyncTabCompleteBridge(RootCommandDispatcher dispatcher, PluginCommand command) {
+        this.dispatcher = dispatcher;
+
+        labels = Sets.newHashSet();
+        labels.add(command.getName().toLowerCase());
+        for (String alias : command.getAliases())
+            labels.add(alias.toLowerCase());
+    }
+
+    /**
+     * Checks if the server can tab complete asynchronously
+     */
+    static boolean isSupported() {
+        return EventClass != null;
+    }
+
+    static void register(RootCommandDispatcher dispatcher, PluginCommand command) {
+        if (!isSupported())
+            return;
+
+        AsyncTabCompleteBridge bridge = new AsyncTabCompleteBridge(dispatcher, command);
+        Bukkit.getPluginManager().registerEvent(EventClass, bridge, EventPriority.NORMAL, (listener, event) -> {
+            if (EventClass.isInstance(event))
+                bridge.onTabComplete(event);
+        }, command.getPlugin(), true);
+    }
+
+    private void onTabComplete(Event event) {
+        try {
+            if ((boolean) Event_IsHandled.invoke(event) || !(boolean) Event_IsCommand.invoke(event))
+                return;
+
+            // Fired synchronously, leave it to the normal tab complete
+            if (Bukkit.isPrimaryThread())
+                return;
+
+            String buffer = (String) Event_GetBuffer.invoke(event);
+            if (buffer.startsWith("/"))
+                buffer = buffer.substring(1);
+
+            // Keep trailing empty strings, they mean a new argument was started
+            String[] parts = buffer.split(" ", -1);
+            if (parts.length < 2)
+                return;
+
+            String label = parts[0].toLowerCase();
+            int namespace = label.indexOf(':');
+            if (namespace >= 0)
+                label = label.substring(namespace + 1);
+
+            if (!labels.contains(label))
+                return;
+
+            CommandSender sender = (CommandSender) Event_GetSender.invoke(event);
+            CompletableFuture<List<String>> future = dispatcher.tabCompleteAsync(sender, "/", parts[0], Arrays.copyOfRange(parts, 1, parts.length));
+            // Not async capable, the server will fall back to onTabComplete
+            if (future == null)
+                return;
+
+            // Completed already since the event is off the main thread
+            List<String> results;
+            try {
+                results = future.join();
+            } catch (CompletionException e) {
+                Bukkit.getLogger().warning("[Monolith] Async tab completion for /" + parts[0] + " failed: " + e.getCause());
+                return;
+            }
+
+            Event_SetCompletions.invoke(event, results);
+            Event_SetHandled.invoke(event, true);
+        } catch (Throwable e) {
+            Bukkit.getLogger().warning("[Monolith] Async tab completion failed: " + e);
+        }
+    }
+}
@@ -23,13 +23,22 @@
 package au.com.addstar.monolith.command;
 
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import au.com.addstar.monolith.Monolith;
+
 
 /**
  * This allows sub commands to be handled in a clean easily expandable way.
@@ -45,9 +54,14 @@ public class CommandDispatcher {
     private final HashMap<String, ICommand> mCommands;
 
     private ICommand mDefaultCommand = null;
+    private final HashMap<String, RateLimiter> mRateLimits;
+
+    // Compiled from mCommands and mDefaultCommand whenever they change
+    private volatile RouteTable mRoutes;
 
     public CommandDispatcher(String description) {
         mCommands = new HashMap<>();
+        mRateLimits = new HashMap<>();
 
         mRootCommandDescription = description;
 
@@ -76,27 +90,52 @@ public class CommandDispatcher {
     }
 
     /**
-     * Registers a command to be handled by this dispatcher
+     * Registers a command to be handled by this dispatcher.
+     * The command's name, aliases, permission and allowed senders are read once here.
      *
      * @param command the command to register must implement @link{ICommand}
      */
     public void registerCommand(ICommand command) {
         mCommands.put(command.getName().toLowerCase(), command);
+        compileRoutes();
     }
 
     public void setDefault(ICommand command) {
         mDefaultCommand = command;
+        compileRoutes();
+    }
+
+    /**
+     * Limits how often each sender can use a command. The console is never limited.
+     *
+     * @param command   The name of the registered command
+     * @param perSecond How many uses are regained per second
+     * @param burst     How many uses can be made at once
+     */
+    public void setRateLimit(String command, double perSecond, int burst) {
+        mRateLimits.put(command.toLowerCase(), new RateLimiter(perSecond, burst));
+        compileRoutes();
+    }
+
+    public void clearRateLimit(String command) {
+        mRateLimits.remove(command.toLowerCase());
+        compileRoutes();
+    }
+
+    private void compileRoutes() {
+        mRoutes = new RouteTable(mCommands.values(), mDefaultCommand, mRateLimits);
     }
 
     public boolean dispatchCommand(CommandSender sender, String parent, String label, String[] args) {
         parent += label + " ";
+        RouteTable routes = mRoutes;
 
-        if (args.length == 0 && mDefaultCommand == null) {
-            displayUsage(sender, parent, label, null);
+        if (args.length == 0 && routes.defaultRoute == null) {
+            displayUsage(sender, routes, parent, label, null);
             return true;
         }
 
-        ICommand com = null;
+        Route route = null;
         String subCommand = "";
 
         String[] subArgs = args;
@@ -105,79 +144,160 @@ public class CommandDispatcher {
             subCommand = args[0].toLowerCase();
             subArgs = (args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0]);
 
-            if (mCommands.containsKey(subCommand))
-                com = mCommands.get(subCommand);
-            else {
-                com = getAlias(subCommand);
-            }
+            route = routes.byName.get(subCommand);
         }
 
-        if (com == null)
-            com = mDefaultCommand;
+        if (route == null)
+            route = routes.defaultRoute;
 
         // Was not found
-        if (com == null) {
-            displayUsage(sender, parent, label, subCommand);
+        if (route == null) {
+            displayUsage(sender, routes, parent, label, subCommand);
             return true;
         }
 
         // Check that the sender is correct
-        if (!com.getAllowedSenders().contains(CommandSenderType.from(sender))) {
-            if (com == mDefaultCommand)
-                displayUsage(sender, parent, label, subCommand);
+        CommandSenderType senderType = CommandSenderType.from(sender);
+        if (!route.allows(senderType)) {
+            if (route == routes.defaultRoute)
+                displayUsage(sender, routes, parent, label, subCommand);
             else
-                sender.sendMessage(ChatColor.RED + String.format("%s %s cannot be called from the %s", label, subCommand, CommandSenderType.from(sender)));
+                sender.sendMessage(ChatColor.RED + String.format("%s %s cannot be called from the %s", label, subCommand, senderType));
             return true;
         }
 
         // Check that they have permission
-        if (com.getPermission() != null && !sender.hasPermission(com.getPermission())) {
+        if (route.permission != null && !sender.hasPermission(route.permission)) {
             sender.sendMessage(ChatColor.RED + String.format("You do not have permission to use %s %s", label, subCommand));
             return true;
         }
 
+        ICommand com = route.command;
+        CommandStats stats = route.stats;
+        stats.setPath(parent);
+
+        if (route.limiter != null && !route.limiter.tryAcquire(sender)) {
+            stats.recordRateLimited();
+            sender.sendMessage(ChatColor.RED + String.format("You are using %s %s too quickly", label, subCommand));
+            return true;
+        }
+
+        if (com instanceof IAsyncCommand) {
+            dispatchAsync(sender, (IAsyncCommand) com, stats, parent, subCommand, args, subArgs);
+            return true;
+        }
+
+        long start = System.nanoTime();
         try {
             if (!com.onCommand(sender, parent, subCommand, subArgs))
                 sender.sendMessage(ChatColor.RED + "Usage: " + parent + com.getUsageString(subCommand, sender));
         } catch (BadArgumentException e) {
-            StringBuilder cmdString = new StringBuilder(ChatColor.GRAY + parent);
-            for (int i = 0; i < args.length; ++i) {
-                if (i == e.getArgument() + 1)
-                    cmdString.append(ChatColor.RED).append(args[i]).append(ChatColor.GRAY);
-                else
-                    cmdString.append(args[i]);
-
-                cmdString.append(" ");
+            stats.recordBadArgument();
+            reportBadArgument(sender, parent, args, e);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            stats.recordException();
+            sender.sendMessage(ChatColor.RED + e.getMessage());
+        } catch (RuntimeException | Error e) {
+            stats.recordException();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            stats.recordExecution(elapsed);
+            if (CommandStats.isSlow(elapsed))
+                Bukkit.getLogger().warning(String.format("[Monolith] Slow command: %s%s took %.1fms (%s)", parent, subCommand, elapsed / 1000000.0, sender.getName()));
+        }
+
+        return true;
+    }
+
+    private static void dispatchAsync(CommandSender sender, IAsyncCommand com, CommandStats stats, String parent, String subCommand, String[] args, String[] subArgs) {
+        MainThread main = new MainThread(Monolith.getInstance());
+
+        CommandWorkers.commandPool().execute(() -> {
+            long start = System.nanoTime();
+            try {
+                if (!com.onCommandAsync(sender, parent, subCommand, subArgs, main))
+                    main.submit(() -> {
+                        sender.sendMessage(ChatColor.RED + "Usage: " + parent + com.getUsageString(subCommand, sender));
+                        return null;
+                    });
+            } catch (BadArgumentException e) {
+                stats.recordBadArgument();
+                main.submit(() -> {
+                    reportBadArgument(sender, parent, args, e);
+                    return null;
+                });
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                stats.recordException();
+                main.submit(() -> {
+                    sender.sendMessage(ChatColor.RED + e.getMessage());
+                    return null;
+                });
+            } catch (Throwable e) {
+                stats.recordException();
+                main.submit(() -> {
+                    sender.sendMessage(ChatColor.RED + "An internal error occurred while running this command");
+                    return null;
+                });
+                Bukkit.getLogger().log(Level.SEVERE, "[Monolith] Unhandled exception running " + parent + subCommand, e);
+            } finally {
+                stats.recordAsyncExecution(System.nanoTime() - start);
             }
+        });
+    }
 
-            if (e.getArgument() >= args.length - 1)
-                cmdString.append(ChatColor.RED + "?");
+    private static void reportBadArgument(CommandSender sender, String parent, String[] args, BadArgumentException e) {
+        StringBuilder cmdString = new StringBuilder(ChatColor.GRAY + parent);
+        for (int i = 0; i < args.length; ++i) {
+            if (i == e.getArgument() + 1)
+                cmdString.append(ChatColor.RED).append(args[i]).append(ChatColor.GRAY);
+            else
+                cmdString.append(args[i]);
 
-            sender.sendMessage(ChatColor.RED + "Error in command: " + cmdString);
-            sender.sendMessage(ChatColor.RED + " " + e.getMessage());
+            cmdString.append(" ");
+        }
 
-            for (String line : e.getInfoLines())
-                sender.sendMessage(ChatColor.GRAY + " " + line);
-        } catch (IllegalArgumentException | IllegalStateException e) {
-            sender.sendMessage(ChatColor.RED + e.getMessage());
+        if (e.getArgument() >= args.length - 1)
+            cmdString.append(ChatColor.RED + "?");
+
+        sender.sendMessage(ChatColor.RED + "Error in command: " + cmdString);
+        sender.sendMessage(ChatColor.RED + " " + e.getMessage());
+
+        for (String line : e.getInfoLines())
+            sender.sendMessage(ChatColor.GRAY + " " + line);
+    }
+
+    private void displayUsage(CommandSender sender, RouteTable routes, String parent, String label, String subcommand) {
+        CommandSenderType senderType = CommandSenderType.from(sender);
+        BitSet permissions = routes.checkPermissions(sender);
+        HelpKey key = new HelpKey("", senderType, permissions);
+
+        String usage = routes.usageCache.get(key);
+        if (usage == null) {
+            usage = renderCommandList(routes, senderType, permissions);
+            routes.cache(routes.usageCache, key, usage);
         }
 
-        return true;
+        if (subcommand != null)
+            sender.sendMessage(ChatColor.RED + "Unknown command: " + ChatColor.RESET + parent + ChatColor.GOLD + subcommand);
+        else
+            sender.sendMessage(ChatColor.RED + "No command specified: " + ChatColor.RESET + parent + ChatColor.GOLD + "<command>");
+
+        if (!usage.isEmpty()) {
+            sender.sendMessage("Valid commands are:");
+            sender.sendMessage(usage);
+        } else
+            sender.sendMessage("There are no commands available to you");
     }
 
-    private void displayUsage(CommandSender sender, String parent, String label, String subcommand) {
+    private static String renderCommandList(RouteTable routes, CommandSenderType senderType, BitSet permissions) {
         StringBuilder usage = new StringBuilder();
 
         boolean first = true;
         boolean odd = true;
         // Build the list
-        for (ICommand command : mCommands.values()) {
-            // Check that the sender is correct
-            if (!command.getAllowedSenders().contains(CommandSenderType.from(sender)))
-                continue;
-
-            // Check that they have permission
-            if (command.getPermission() != null && !sender.hasPermission(command.getPermission()))
+        for (Route route : routes.commands) {
+            if (!route.isAvailable(senderType, permissions))
                 continue;
 
             if (odd)
@@ -187,44 +307,34 @@ public class CommandDispatcher {
             odd = !odd;
 
             if (first)
-                usage.append(command.getName());
+                usage.append(route.command.getName());
             else
-                usage.append(", ").append(command.getName());
+                usage.append(", ").append(route.command.getName());
 
             first = false;
         }
 
-        if (subcommand != null)
-            sender.sendMessage(ChatColor.RED + "Unknown command: " + ChatColor.RESET + parent + ChatColor.GOLD + subcommand);
-        else
-            sender.sendMessage(ChatColor.RED + "No command specified: " + ChatColor.RESET + parent + ChatColor.GOLD + "<command>");
-
-        if (!first) {
-            sender.sendMessage("Valid commands are:");
-            sender.sendMessage(usage.toString());
-        } else
-            sender.sendMessage("There are no commands available to you");
-
-
+        return usage.toString();
     }
 
     public List<String> tabComplete(CommandSender sender, String parent, String label, String[] args) {
         parent += label + " ";
+        RouteTable routes = mRoutes;
+        CommandSenderType senderType = CommandSenderType.from(sender);
 
         List<String> results = new ArrayList<>();
         if (args.length == 1) // Tab completing the sub command
         {
-            for (ICommand registeredCommand : mCommands.values()) {
-                if (registeredCommand.getName().toLowerCase().startsWith(args[0].toLowerCase())) {
-                    // Check that the sender is correct
-                    if (!registeredCommand.getAllowedSenders().contains(CommandSenderType.from(sender)))
-                        continue;
-
-                    // Check that they have permission
-                    if (registeredCommand.getPermission() != null && !sender.hasPermission(registeredCommand.getPermission()))
-                        continue;
-
-                    results.add(registeredCommand.getName());
+            String prefix = args[0].toLowerCase();
+            BitSet permissions = null;
+            for (Route route : routes.commands) {
+                if (route.name.startsWith(prefix) && route.allows(senderType)) {
+                    // Only check permissions once something matches
+                    if (permissions == null)
+                        permissions = routes.checkPermissions(sender);
+
+                    if (route.isAvailable(senderType, permissions))
+                        results.add(route.command.getName());
                 }
             }
         } else {
@@ -232,46 +342,287 @@ public class CommandDispatcher {
             String subCommand = args[0].toLowerCase();
             String[] subArgs = (args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0]);
 
-            ICommand com = null;
-            if (mCommands.containsKey(subCommand)) {
-                com = mCommands.get(subCommand);
-            } else {
-                // Check aliases
-                com = getAlias(subCommand);
-            }
+            Route route = routes.byName.get(subCommand);
 
             // Was not found
-            if (com == null) {
+            if (route == null) {
                 return results;
             }
 
             // Check that the sender is correct
-            if (!com.getAllowedSenders().contains(CommandSenderType.from(sender)))
+            if (!route.allows(senderType))
                 return results;
 
             // Check that they have permission
-            if (com.getPermission() != null && !sender.hasPermission(com.getPermission()))
+            if (route.permission != null && !sender.hasPermission(route.permission))
                 return results;
 
-            results = com.onTabComplete(sender, parent, subCommand, subArgs);
+            results = route.command.onTabComplete(sender, parent, subCommand, subArgs);
             if (results == null)
                 return new ArrayList<>();
         }
         return results;
     }
 
-    private ICommand getAlias(String subCommand) {
-        for (Entry<String, ICommand> ent : mCommands.entrySet()) {
-            if (ent.getValue().getAliases() != null) {
-                String[] aliases = ent.getValue().getAliases();
-                for (String alias : aliases) {
-                    if (subCommand.equalsIgnoreCase(alias)) {
-                        return ent.getValue();
-                    }
+    /**
+     * Tab completes off the main thread where possible. Subcommand names come from the
+     * registration snapshot, and commands implementing {@link IAsyncTabCompleter} run
+     * directly when called off the main thread, or on a worker otherwise.
+     *
+     * @param sender The sender of the tab complete
+     * @param parent The command name and path of the parent command.
+     * @param label  The command name or alias used
+     * @param args   The current arguments entered.
+     * @return A future for the results, or null if the command can only be completed
+     * synchronously with {@link #tabComplete(CommandSender, String, String, String[])}
+     */
+    public CompletableFuture<List<String>> tabCompleteAsync(CommandSender sender, String parent, String label, String[] args) {
+        if (args.length <= 1)
+            return CompletableFuture.completedFuture(tabComplete(sender, parent, label, args));
+
+        RouteTable routes = mRoutes;
+        String subCommand = args[0].toLowerCase();
+        Route route = routes.byName.get(subCommand);
+
+        if (route == null || !route.allows(CommandSenderType.from(sender)))
+            return CompletableFuture.completedFuture(new ArrayList<>());
+
+        if (route.permission != null && !sender.hasPermission(route.permission))
+            return CompletableFuture.completedFuture(new ArrayList<>());
+
+        if (!(route.command instanceof IAsyncTabCompleter))
+            return null;
+
+        IAsyncTabCompleter completer = (IAsyncTabCompleter) route.command;
+        String fullParent = parent + label + " ";
+        String[] subArgs = Arrays.copyOfRange(args, 1, args.length);
+
+        Supplier<List<String>> task = () -> {
+            List<String> results = completer.onTabCompleteAsync(sender, fullParent, subCommand, subArgs);
+            if (results == null)
+                return new ArrayList<>();
+            return results;
+        };
+
+        // Already off the main thread, so handing over to a worker would only add a hop
+        if (!Bukkit.isPrimaryThread()) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                CompletableFuture<List<String>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+
+        return CompletableFuture.supplyAsync(task, CommandWorkers.pool());
+    }
+
+    /**
+     * A command with its permission and allowed senders read at registration
+     */
+    private static final class Route {
+        final ICommand command;
+        final String name;
+        final String permission;
+        // Index into RouteTable.permissions or -1 if there is no permission
+        final int permissionIndex;
+        // Bit per CommandSenderType ordinal
+        final int senderMask;
+        final CommandStats stats;
+        // Null if the command is not rate limited
+        final RateLimiter limiter;
+
+        Route(ICommand command, int permissionIndex, RateLimiter limiter) {
+            this.command = command;
+            this.permissionIndex = permissionIndex;
+            this.limiter = limiter;
+            name = command.getName().toLowerCase();
+            permission = command.getPermission();
+            stats = CommandStats.of(command);
+
+            int mask = 0;
+            for (CommandSenderType type : command.getAllowedSenders())
+                mask |= 1 << type.ordinal();
+            senderMask = mask;
+        }
+
+        boolean allows(CommandSenderType type) {
+            return type != null && (senderMask & (1 << type.ordinal())) != 0;
+        }
+
+        boolean isAvailable(CommandSenderType type, BitSet permissions) {
+            return allows(type) && (permissionIndex < 0 || permissions.get(permissionIndex));
+        }
+    }
+
+    /**
+     * Identifies cached help. Senders of the same type holding the same
+     * permissions see the same list of commands.
+     */
+    private static final class HelpKey {
+        private final String parent;
+        private final CommandSenderType senderType;
+        private final BitSet permissions;
+
+        HelpKey(String parent, CommandSenderType senderType, BitSet permissions) {
+            this.parent = parent;
+            this.senderType = senderType;
+            this.permissions = permissions;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof HelpKey))
+                return false;
+
+            HelpKey other = (HelpKey) obj;
+            return senderType == other.senderType && parent.equals(other.parent) && permissions.equals(other.permissions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(parent, senderType, permissions);
+        }
+    }
+
+    /**
+     * The sender independent parts of a help listing. Usage strings are left
+     * out as {@link ICommand#getUsageString(String, CommandSender)} may vary
+     * per sender.
+     */
+    private static final class HelpPage {
+        final String[] header;
+        final HelpEntry[] entries;
+        final int lineCount;
+
+        HelpPage(String[] header, HelpEntry[] entries) {
+            this.header = header;
+            this.entries = entries;
+
+            int count = header.length;
+            for (HelpEntry entry : entries)
+                count += 1 + entry.description.length;
+            lineCount = count;
+        }
+    }
+
+    private static final class HelpEntry {
+        final String prefix;
+        final ICommand command;
+        final String[] description;
+
+        HelpEntry(String prefix, ICommand command) {
+            this.prefix = prefix;
+            this.command = command;
+
+            String[] lines = command.getDescription().split("\n");
+            description = new String[lines.length];
+            for (int i = 0; i < lines.length; ++i)
+                description[i] = ChatColor.GRAY + " \u25B7 " + lines[i];
+        }
+    }
+
+    /**
+     * An immutable snapshot of the registered commands. Names and aliases
+     * share one lowercase map, and each distinct permission is listed once
+     * so a sender's permissions can be checked once per invocation.
+     */
+    private static final class RouteTable {
+        private static final int MaxCachedRenders = 256;
+
+        final Map<String, Route> byName;
+        final List<Route> commands;
+        final Route defaultRoute;
+        final String[] permissions;
+
+        // Rendered output, dropped along with the table when registrations change
+        final ConcurrentHashMap<HelpKey, HelpPage> helpCache = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<HelpKey, String> usageCache = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, String> coloredUsage = new ConcurrentHashMap<>();
+
+        RouteTable(Collection<ICommand> registered, ICommand defaultCommand, Map<String, RateLimiter> limits) {
+            Map<String, Integer> permissionIndexes = new LinkedHashMap<>();
+            List<Route> routes = new ArrayList<>(registered.size());
+            for (ICommand command : registered)
+                routes.add(new Route(command, indexPermission(permissionIndexes, command.getPermission()), limits.get(command.getName().toLowerCase())));
+
+            Route defaultRoute = null;
+            if (defaultCommand != null) {
+                for (Route route : routes) {
+                    if (route.command == defaultCommand)
+                        defaultRoute = route;
                 }
+
+                if (defaultRoute == null)
+                    defaultRoute = new Route(defaultCommand, indexPermission(permissionIndexes, defaultCommand.getPermission()), limits.get(defaultCommand.getName().toLowerCase()));
+            }
+
+            // Names take priority over aliases
+            Map<String, Route> names = new HashMap<>();
+            for (Route route : routes)
+                names.put(route.name, route);
+
+            for (Route route : routes) {
+                String[] aliases = route.command.getAliases();
+                if (aliases == null)
+                    continue;
+
+                for (String alias : aliases)
+                    names.putIfAbsent(alias.toLowerCase(), route);
+            }
+
+            byName = ImmutableMap.copyOf(names);
+            commands = ImmutableList.copyOf(routes);
+            this.defaultRoute = defaultRoute;
+            permissions = permissionIndexes.keySet().toArray(new String[0]);
+        }
+
+        private static int indexPermission(Map<String, Integer> indexes, String permission) {
+            if (permission == null)
+                return -1;
+
+            Integer index = indexes.get(permission);
+            if (index == null) {
+                index = indexes.size();
+                indexes.put(permission, index);
+            }
+            return index;
+        }
+
+        /**
+         * Colors a usage string, reusing the result for usage strings seen before
+         */
+        String colorUsageCached(String usage) {
+            String colored = coloredUsage.get(usage);
+            if (colored == null) {
+                colored = colorUsage(usage);
+                cache(coloredUsage, usage, colored);
             }
+            return colored;
+        }
+
+        <K, T> void cache(ConcurrentHashMap<K, T> cache, K key, T value) {
+            // Guard against unbounded growth from unusual permission setups
+            if (cache.size() >= MaxCachedRenders)
+                cache.clear();
+            cache.put(key, value);
+        }
+
+        /**
+         * Checks each distinct permission once
+         *
+         * @param sender The sender to check
+         * @return A set with the index of each held permission
+         */
+        BitSet checkPermissions(CommandSender sender) {
+            BitSet held = new BitSet(permissions.length);
+            for (int i = 0; i < permissions.length; ++i) {
+                if (sender.hasPermission(permissions[i]))
+                    held.set(i);
+            }
+            return held;
         }
-        return null;
     }
 
     private class InternalHelp implements ICommand {
@@ -310,37 +661,50 @@ public class CommandDispatcher {
             if (args.length != 0)
                 return false;
 
-            sender.sendMessage("");
-            sender.sendMessage(ChatColor.YELLOW + parent + ChatColor.GOLD + "<command>");
-            sender.sendMessage(ChatColor.GRAY + "\u25B7 " + mRootCommandDescription);
-            sender.sendMessage(ChatColor.YELLOW + "Available commands:");
+            RouteTable routes = mRoutes;
+            CommandSenderType senderType = CommandSenderType.from(sender);
+            BitSet permissions = routes.checkPermissions(sender);
+            HelpKey key = new HelpKey(parent, senderType, permissions);
 
-            if (mDefaultCommand != null) {
-                if (mDefaultCommand.getAllowedSenders().contains(CommandSenderType.from(sender)) && (mDefaultCommand.getPermission() == null || sender.hasPermission(mDefaultCommand.getPermission()))) {
-                    sender.sendMessage(ChatColor.WHITE + parent + ChatColor.YELLOW + colorUsage(mDefaultCommand.getUsageString(mDefaultCommand.getName(), sender)));
+            HelpPage page = routes.helpCache.get(key);
+            if (page == null) {
+                page = buildHelp(routes, parent, senderType, permissions);
+                routes.cache(routes.helpCache, key, page);
+            }
 
-                    String[] descriptionLines = mDefaultCommand.getDescription().split("\n");
-                    for (String line : descriptionLines)
-                        sender.sendMessage(ChatColor.GRAY + " \u25B7 " + line);
-                }
+            // Usage strings may depend on the sender so they are rendered each time
+            List<String> lines = new ArrayList<>(page.lineCount);
+            Collections.addAll(lines, page.header);
+            for (HelpEntry entry : page.entries) {
+                lines.add(entry.prefix + routes.colorUsageCached(entry.command.getUsageString(entry.command.getName(), sender)));
+                Collections.addAll(lines, entry.description);
             }
 
-            for (ICommand command : mCommands.values()) {
-                // Dont show commands that are irrelevant
-                if (!command.getAllowedSenders().contains(CommandSenderType.from(sender)))
-                    continue;
+            sender.sendMessage(lines.toArray(new String[0]));
+            return true;
+        }
 
-                if (command.getPermission() != null && !sender.hasPermission(command.getPermission()))
-                    continue;
+        private HelpPage buildHelp(RouteTable routes, String parent, CommandSenderType senderType, BitSet permissions) {
+            String[] header = new String[] {
+                "",
+                ChatColor.YELLOW + parent + ChatColor.GOLD + "<command>",
+                ChatColor.GRAY + "\u25B7 " + mRootCommandDescription,
+                ChatColor.YELLOW + "Available commands:"
+            };
 
+            List<HelpEntry> entries = new ArrayList<>();
+            if (routes.defaultRoute != null && routes.defaultRoute.isAvailable(senderType, permissions))
+                entries.add(new HelpEntry(ChatColor.WHITE + parent + ChatColor.YELLOW, routes.defaultRoute.command));
 
-                sender.sendMessage(" " + ChatColor.WHITE + parent + ChatColor.YELLOW + colorUsage(command.getUsageString(command.getName(), sender)));
+            for (Route route : routes.commands) {
+                // Dont show commands that are irrelevant
+                if (!route.isAvailable(senderType, permissions))
+                    continue;
 
-                String[] descriptionLines = command.getDescription().split("\n");
-                for (String line : descriptionLines)
-                    sender.sendMessage(ChatColor.GRAY + " \u25B7 " + line);
+                entries.add(new HelpEntry(" " + ChatColor.WHITE + parent + ChatColor.YELLOW, route.command));
             }
-            return true;
+
+            return new HelpPage(header, entries.toArray(new HelpEntry[0]));
         }
 
         @Override
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * The arguments a command accepts, compiled once into a parse plan.
+ * Each argument's parser is resolved from {@link ArgumentParsers} when the
+ * signature is built, so parsing and completion need no further lookups.
+ * <br>
+ * Example:
+ * <pre>
+ * CommandSignature signature = CommandSignature.builder()
+ *     .required("player", Player.class)
+ *     .required("amount", Integer.class)
+ *     .remaining("reason")
+ *     .build();
+ * </pre>
+ */
+public final class CommandSignature {
+    private final String[] mNames;
+    private final ArgumentParser<?>[] mParsers;
+    private final int mRequired;
+    private final boolean mGreedy;
+    private final Map<String, Integer> mIndexes;
+    private final String mUsage;
+
+    private CommandSignature(Builder builder) {
+        mNames = builder.mNames.toArray(new String[0]);
+        mParsers = builder.mParsers.toArray(new ArgumentParser<?>[0]);
+        mRequired = builder.mRequired;
+        mGreedy = builder.mGreedy;
+
+        mIndexes = new HashMap<>();
+        StringBuilder usage = new StringBuilder();
+        for (int i = 0; i < mNames.length; ++i) {
+            mIndexes.put(mNames[i], i);
+
+            if (i != 0)
+                usage.append(' ');
+
+            if (i < mRequired)
+                usage.append('<').append(mNames[i]).append('>');
+            else
+                usage.append('[').append(mNames[i]).append(']');
+        }
+        mUsage = usage.toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The usage for these arguments, eg. {@code <player> <amount> [reason]}
+     */
+    public String getUsage() {
+        return mUsage;
+    }
+
+    /**
+     * Parses command arguments
+     *
+     * @param args The arguments given to the command
+     * @return The parsed values
+     * @throws BadArgumentException Thrown if an argument is missing or cannot be parsed
+     */
+    public ParsedArguments parse(String[] args) throws BadArgumentException {
+        if (args.length < mRequired)
+            throw new BadArgumentException(args.length, "Expected " + mNames[args.length]);
+
+        if (args.length > mNames.length && !mGreedy)
+            throw new BadArgumentException(mNames.length, "Too many arguments. Expected " + mUsage);
+
+        Object[] values = new Object[mNames.length];
+        int count = Math.min(args.length, mNames.length);
+        for (int i = 0; i < count; ++i) {
+            String value = args[i];
+            if (mGreedy && i == mNames.length - 1)
+                value = StringUtils.join(args, ' ', i, args.length);
+
+            try {
+                values[i] = mParsers[i].parse(value);
+            } catch (IllegalArgumentException e) {
+                throw new BadArgumentException(i, e.getMessage());
+            }
+        }
+
+        return new ParsedArguments(mIndexes, values, count);
+    }
+
+    /**
+     * Tab completes the last argument being typed
+     *
+     * @param args The arguments entered so far, including the partial last argument
+     * @return The possible values
+     */
+    public List<String> complete(String[] args) {
+        int index = args.length - 1;
+        if (index < 0 || index >= mParsers.length || (mGreedy && index == mParsers.length - 1))
+            return new ArrayList<>();
+
+        return mParsers[index].complete(args[index]);
+    }
+
+    public static final class Builder {
+        private final List<String> mNames = new ArrayList<>();
+        private final List<ArgumentParser<?>> mParsers = new ArrayList<>();
+        private int mRequired;
+        private boolean mGreedy;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an argument that must be given
+         *
+         * @param name The argument name
+         * @param type The type to parse it as
+         * @return this
+         */
+        public Builder required(String name, Class<?> type) {
+            return required(name, ArgumentParsers.get(type));
+        }
+
+        public Builder required(String name, ArgumentParser<?> parser) {
+            Validate.isTrue(mRequired == mNames.size(), "Required arguments must come before optional ones");
+            add(name, parser);
+            ++mRequired;
+            return this;
+        }
+
+        /**
+         * Adds an argument that may be left out
+         *
+         * @param name The argument name
+         * @param type The type to parse it as
+         * @return this
+         */
+        public Builder optional(String name, Class<?> type) {
+            return optional(name, ArgumentParsers.get(type));
+        }
+
+        public Builder optional(String name, ArgumentParser<?> parser) {
+            add(name, parser);
+            return this;
+        }
+
+        /**
+         * Adds an optional final argument that takes the rest of the arguments as a single string
+         *
+         * @param name The argument name
+         * @return this
+         */
+        public Builder remaining(String name) {
+            add(name, ArgumentParsers.get(String.class));
+            mGreedy = true;
+            return this;
+        }
+
+        private void add(String name, ArgumentParser<?> parser) {
+            Validate.isTrue(!mGreedy, "No arguments can follow a remaining argument");
+            Validate.isTrue(!mNames.contains(name), "Duplicate argument " + name);
+            mNames.add(name);
+            mParsers.add(parser);
+        }
+
+        public CommandSignature build() {
+            return new CommandSignature(this);
+        }
+    }
+
+    /**
+     * The values parsed by a {@link CommandSignature}
+     */
+    public static final class ParsedArguments {
+        private final Map<String, Integer> mIndexes;
+        private final Object[] mValues;
+        private final int mCount;
+
+        private ParsedArguments(Map<String, Integer> indexes, Object[] values, int count) {
+            mIndexes = indexes;
+            mValues = values;
+            mCount = count;
+        }
+
+        /**
+         * @return The number of arguments that were given
+         */
+        public int size() {
+            return mCount;
+        }
+
+        /**
+         * Checks if an argument was given
+         *
+         * @param name The argument name
+         * @return True if it was given
+         */
+        public boolean has(String name) {
+            return indexOf(name) < mCount;
+        }
+
+        /**
+         * Gets a parsed argument
+         *
+         * @param name The argument name
+         * @param <T>  The type the argument was parsed as
+         * @return The value, or null if an optional argument was left out
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(String name) {
+            return (T) mValues[indexOf(name)];
+        }
+
+        /**
+         * Gets a parsed argument
+         *
+         * @param name         The argument name
+         * @param defaultValue The value to use if the argument was left out
+         * @param <T>          The type the argument was parsed as
+         * @return The value
+         */
+        public <T> T get(String name, T defaultValue) {
+            if (!has(name))
+                return defaultValue;
+            return get(name);
+        }
+
+        private int indexOf(String name) {
+            Integer index = mIndexes.get(name);
+            Validate.notNull(index, "Unknown argument " + name);
+            return index;
+        }
+
+        /**
+         * @return The parsed values in order, with null for any left out
+         */
+        public List<Object> values() {
+            return Collections.unmodifiableList(Arrays.asList(mValues));
+        }
+    }
+}
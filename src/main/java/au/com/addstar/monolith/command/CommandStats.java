@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.plugin.Plugin;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Execution statistics for a command registered with a {@link CommandDispatcher}.
+ * Statistics are kept for every dispatched command across all plugins,
+ * until the command is garbage collected or its plugin is disabled.
+ */
+public final class CommandStats {
+    /**
+     * The number of latency buckets. Bucket i counts executions taking
+     * 2^i to 2^(i+1) microseconds, the last bucket counts anything slower.
+     */
+    public static final int Buckets = 25;
+
+    // Weak so other plugins' commands, and through them their class loaders, can be unloaded
+    private static final ConcurrentMap<ICommand, CommandStats> All = new MapMaker().weakKeys().makeMap();
+    private static volatile long SlowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final WeakReference<ICommand> mCommand;
+    private final String mName;
+    private volatile String mPath;
+
+    private final LongAdder mInvocations = new LongAdder();
+    private final LongAdder mExceptions = new LongAdder();
+    private final LongAdder mBadArguments = new LongAdder();
+    private final LongAdder mRateLimited = new LongAdder();
+    private final LongAdder mTotalNanos = new LongAdder();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+    private final LongAdder[] mHistogram;
+
+    // Async commands run off the main thread, so their wall time is not tick cost
+    private final LongAdder mAsyncInvocations = new LongAdder();
+    private final LongAdder mAsyncTotalNanos = new LongAdder();
+    private final AtomicLong mAsyncMaxNanos = new AtomicLong();
+
+    private CommandStats(ICommand command) {
+        mCommand = new WeakReference<>(command);
+        mName = command.getName();
+        mHistogram = new LongAdder[Buckets];
+        for (int i = 0; i < Buckets; ++i)
+            mHistogram[i] = new LongAdder();
+    }
+
+    /**
+     * Gets the statistics for a command, creating them if needed
+     *
+     * @param command The command
+     * @return The statistics
+     */
+    public static CommandStats of(ICommand command) {
+        return All.computeIfAbsent(command, CommandStats::new);
+    }
+
+    /**
+     * @return A copy of the statistics of every command that has been registered
+     */
+    public static List<CommandStats> getAll() {
+        return new ArrayList<>(All.values());
+    }
+
+    /**
+     * Forgets the statistics of every command from a plugin
+     *
+     * @param plugin The plugin, which is usually being disabled
+     */
+    public static void removeAll(Plugin plugin) {
+        ClassLoader loader = plugin.getClass().getClassLoader();
+        All.keySet().removeIf(command -> command.getClass().getClassLoader() == loader);
+    }
+
+    public static void resetAll() {
+        for (CommandStats stats : All.values())
+            stats.reset();
+    }
+
+    /**
+     * Sets how long a command can run before it is logged as slow
+     *
+     * @param time The time, or 0 to disable logging
+     * @param unit The unit of time
+     */
+    public static void setSlowThreshold(long time, TimeUnit unit) {
+        SlowThresholdNanos = unit.toNanos(time);
+    }
+
+    public static long getSlowThreshold(TimeUnit unit) {
+        return unit.convert(SlowThresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    static boolean isSlow(long nanos) {
+        return SlowThresholdNanos > 0 && nanos >= SlowThresholdNanos;
+    }
+
+    /**
+     * @return The command, or null if it has been unloaded
+     */
+    public ICommand getCommand() {
+        return mCommand.get();
+    }
+
+    /**
+     * @return The full command path as first dispatched, or the command name if it has not been used
+     */
+    public String getPath() {
+        String path = mPath;
+        return path != null ? path : mName;
+    }
+
+    void setPath(String parent) {
+        if (mPath == null)
+            mPath = parent + mName;
+    }
+
+    void recordExecution(long nanos) {
+        mInvocations.increment();
+        mTotalNanos.add(nanos);
+        mHistogram[bucketOf(nanos)].increment();
+
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos))
+            max = mMaxNanos.get();
+    }
+
+    void recordAsyncExecution(long nanos) {
+        mAsyncInvocations.increment();
+        mAsyncTotalNanos.add(nanos);
+
+        long max = mAsyncMaxNanos.get();
+        while (nanos > max && !mAsyncMaxNanos.compareAndSet(max, nanos))
+            max = mAsyncMaxNanos.get();
+    }
+
+    void recordException() {
+        mExceptions.increment();
+    }
+
+    void recordBadArgument() {
+        mBadArguments.increment();
+    }
+
+    void recordRateLimited() {
+        mRateLimited.increment();
+    }
+
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        if (micros <= 1)
+            return 0;
+        return Math.min(Buckets - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    public long getInvocations() {
+        return mInvocations.sum();
+    }
+
+    /**
+     * @return The number of executions that ran off the main thread. These are not
+     * included in the invocations, times or histogram, which measure tick cost.
+     */
+    public long getAsyncInvocations() {
+        return mAsyncInvocations.sum();
+    }
+
+    public long getAsyncTotalTime(TimeUnit unit) {
+        return unit.convert(mAsyncTotalNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAsyncMaxTime(TimeUnit unit) {
+        return unit.convert(mAsyncMaxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getExceptions() {
+        return mExceptions.sum();
+    }
+
+    public long getBadArguments() {
+        return mBadArguments.sum();
+    }
+
+    /**
+     * @return The number of times a sender was refused by the command's rate limit
+     */
+    public long getRateLimited() {
+        return mRateLimited.sum();
+    }
+
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(mTotalNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxTime(TimeUnit unit) {
+        return unit.convert(mMaxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The mean execution time in milliseconds
+     */
+    public double getAverageMillis() {
+        long count = mInvocations.sum();
+        if (count == 0)
+            return 0;
+        return mTotalNanos.sum() / (count * 1000000.0);
+    }
+
+    /**
+     * Estimates an execution time percentile from the histogram
+     *
+     * @param percentile The percentile between 0 and 1
+     * @return The upper bound of the bucket containing the percentile, in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] histogram = getHistogram();
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+
+        if (total == 0)
+            return 0;
+
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            seen += histogram[i];
+            if (seen >= target)
+                return (1L << (i + 1)) / 1000.0;
+        }
+
+        return (1L << Buckets) / 1000.0;
+    }
+
+    /**
+     * @return A copy of the latency histogram, see {@link #Buckets}
+     */
+    public long[] getHistogram() {
+        long[] counts = new long[Buckets];
+        for (int i = 0; i < Buckets; ++i)
+            counts[i] = mHistogram[i].sum();
+        return counts;
+    }
+
+    public void reset() {
+        mInvocations.reset();
+        mExceptions.reset();
+        mBadArguments.reset();
+        mRateLimited.reset();
+        mTotalNanos.reset();
+        mMaxNanos.set(0);
+        mAsyncInvocations.reset();
+        mAsyncTotalNanos.reset();
+        mAsyncMaxNanos.set(0);
+        for (LongAdder bucket : mHistogram)
+            bucket.reset();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import au.com.addstar.monolith.util.Crafty;
+
+/**
+ * The shared worker pool for command work that runs off the main thread
+ */
+public final class CommandWorkers {
+    private static final ExecutorService Pool;
+    // Runs command bodies, which may block on I/O or the server thread
+    private static final ExecutorService CommandPool;
+
+    static {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "Monolith Command Worker #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        Pool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), factory);
+        CommandPool = createCommandPool(factory);
+    }
+
+    /**
+     * Uses virtual threads when the JVM has them, since command bodies mostly wait
+     */
+    private static ExecutorService createCommandPool(ThreadFactory fallbackFactory) {
+        MethodHandle virtual = Crafty.findStaticMethod(Executors.class, "newVirtualThreadPerTaskExecutor", ExecutorService.class);
+        if (virtual != null) {
+            try {
+                return (ExecutorService) virtual.invoke();
+            } catch (Throwable e) {
+                // Virtual threads may be a preview feature that is not enabled
+            }
+        }
+
+        return Executors.newCachedThreadPool(fallbackFactory);
+    }
+
+    private CommandWorkers() {
+    }
+
+    static ExecutorService pool() {
+        return Pool;
+    }
+
+    static ExecutorService commandPool() {
+        return CommandPool;
+    }
+
+    /**
+     * Stops both pools once their queued work is done.
+     * Monolith calls this when it is disabled so reloads do not leave threads behind.
+     */
+    public static void shutdown() {
+        Pool.shutdown();
+        CommandPool.shutdown();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import au.com.addstar.monolith.util.Parser;
+
+/**
+ * Parses enum constants case insensitively, with or without underscores.
+ * Instances are cached per enum class, see {@link #of(Class)}.
+ *
+ * @param <T> The enum type
+ */
+public final class EnumParser<T extends Enum<T>> implements ArgumentParser<T> {
+    private static final ClassValue<EnumParser<?>> Cache = new ClassValue<EnumParser<?>>() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Override
+        protected EnumParser<?> computeValue(Class<?> type) {
+            return new EnumParser(type.asSubclass(Enum.class));
+        }
+    };
+
+    private final Class<T> mType;
+    private final String[] mNames;
+
+    private EnumParser(Class<T> type) {
+        mType = type;
+
+        T[] values = type.getEnumConstants();
+        mNames = new String[values.length];
+        for (int i = 0; i < values.length; ++i)
+            mNames[i] = values[i].name().toLowerCase(Locale.ROOT);
+        Arrays.sort(mNames);
+    }
+
+    /**
+     * Gets the parser for an enum class
+     *
+     * @param type The enum class
+     * @param <T>  The enum type
+     * @return The shared parser
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Enum<T>> EnumParser<T> of(Class<T> type) {
+        return (EnumParser<T>) Cache.get(type);
+    }
+
+    @Override
+    public T parse(String value) throws IllegalArgumentException {
+        return Parser.parseEnum(mType, value);
+    }
+
+    @Override
+    public List<String> complete(String prefix) {
+        return ArgumentParsers.matchSorted(mNames, prefix);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * A command whose body runs off the server thread, for commands that do I/O or
+ * slow lookups. The dispatcher still checks the sender and permission on the server
+ * thread, then runs {@link #onCommandAsync} on a worker. Use the given
+ * {@link MainThread} for anything that must happen on the server thread.
+ * <br>
+ * Usage messages and {@link BadArgumentException}s are reported just as they are
+ * for synchronous commands.
+ */
+public interface IAsyncCommand extends ICommand {
+    /**
+     * Called on a worker thread when this command is executed. By this time the permission
+     * and sender type have been checked.
+     *
+     * @param sender The sender of this command
+     * @param parent The command name and path of the parent command.
+     * @param label  The command name or the alias that was used to call this command
+     * @param args   The arguments for this command
+     * @param main   Runs tasks on the server thread
+     * @return True if this command was executed. False to show the usage
+     */
+    boolean onCommandAsync(CommandSender sender, String parent, String label, String[] args, MainThread main) throws BadArgumentException;
+
+    /**
+     * Async commands are never run synchronously, the dispatcher calls
+     * {@link #onCommandAsync} instead.
+     */
+    @Override
+    default boolean onCommand(CommandSender sender, String parent, String label, String[] args) throws BadArgumentException {
+        throw new IllegalStateException(getName() + " must be run through a CommandDispatcher");
+    }
+}
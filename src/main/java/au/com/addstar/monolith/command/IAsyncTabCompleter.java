@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+/**
+ * An optional capability for {@link ICommand}s whose tab completion is thread safe.
+ * <br>
+ * Commands implementing this are completed off the main thread where the server allows it,
+ * so completers that search {@link au.com.addstar.monolith.lookup.Lookup} tables or player
+ * lists do not hold up the tick. Where it is not possible, {@link ICommand#onTabComplete}
+ * is still used.
+ */
+public interface IAsyncTabCompleter {
+    /**
+     * Called off the main thread when tab complete is used on this command.
+     * Only thread safe server methods may be used, and any data shared with
+     * the main thread should be read from immutable snapshots.
+     *
+     * @param sender The sender of the tab complete
+     * @param parent The command name and path of the parent command.
+     * @param label  The command name or the alias that was used to specify this command
+     * @param args   The current arguments entered.
+     * @return A list of all results or null
+     */
+    List<String> onTabCompleteAsync(CommandSender sender, String parent, String label, String[] args);
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.command;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.command.BlockCommandSender;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.command.RemoteConsoleCommandSender;
+import org.bukkit.entity.Entity;
+
+/**
+ * A token bucket per sender. Each sender may use up to the burst size at once,
+ * and regains tokens at a fixed rate.
+ * <br>
+ * Buckets are kept in open addressed primitive arrays keyed by UUID. A bucket that
+ * has refilled completely is the same as having no bucket, so those are dropped
+ * whenever the table is rebuilt. The console is never limited, and command blocks
+ * are keyed by their location.
+ */
+public final class RateLimiter {
+    private static final long Empty = Long.MIN_VALUE;
+    private static final long PurgeIntervalNanos = 60_000_000_000L;
+    private static final int MinCapacity = 16;
+
+    private final double mTokensPerNano;
+    private final double mBurst;
+
+    private long[] mMost;
+    private long[] mLeast;
+    private double[] mTokens;
+    // The time tokens were last updated, or Empty if the slot is free
+    private long[] mUpdated;
+    private int mSize;
+    private long mLastPurge;
+
+    /**
+     * @param perSecond How many uses are regained per second
+     * @param burst     How many uses can be made at once
+     */
+    public RateLimiter(double perSecond, int burst) {
+        Validate.isTrue(perSecond > 0, "perSecond must be greater than 0");
+        Validate.isTrue(burst >= 1, "burst must be at least 1");
+
+        mTokensPerNano = perSecond / 1_000_000_000.0;
+        mBurst = burst;
+        allocate(MinCapacity);
+        mLastPurge = System.nanoTime();
+    }
+
+    public double getPerSecond() {
+        return mTokensPerNano * 1_000_000_000.0;
+    }
+
+    public int getBurst() {
+        return (int) mBurst;
+    }
+
+    /**
+     * Takes a token for a sender if one is available
+     *
+     * @param sender The sender
+     * @return True if the sender may continue
+     */
+    public boolean tryAcquire(CommandSender sender) {
+        if (sender instanceof ConsoleCommandSender || sender instanceof RemoteConsoleCommandSender)
+            return true;
+
+        if (sender instanceof Entity) {
+            // Players and command minecarts
+            UUID id = ((Entity) sender).getUniqueId();
+            return tryAcquire(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+
+        if (sender instanceof BlockCommandSender) {
+            Location location = ((BlockCommandSender) sender).getBlock().getLocation();
+            UUID world = location.getWorld().getUID();
+            long position = ((long) location.getBlockX() & 0x3FFFFFF) << 38 | ((long) location.getBlockZ() & 0x3FFFFFF) << 12 | (location.getBlockY() & 0xFFF);
+            return tryAcquire(world.getMostSignificantBits() ^ world.getLeastSignificantBits(), position);
+        }
+
+        return tryAcquire(0, sender.getName().hashCode());
+    }
+
+    /**
+     * Takes a token for a key if one is available
+     *
+     * @param most  The most significant bits of the key
+     * @param least The least significant bits of the key
+     * @return True if a token was available
+     */
+    public synchronized boolean tryAcquire(long most, long least) {
+        long now = System.nanoTime();
+        if (now - mLastPurge > PurgeIntervalNanos)
+            rebuild(now);
+
+        int slot = find(most, least);
+        if (mUpdated[slot] == Empty) {
+            if ((mSize + 1) * 2 > mUpdated.length) {
+                rebuild(now);
+                slot = find(most, least);
+            }
+
+            mMost[slot] = most;
+            mLeast[slot] = least;
+            mTokens[slot] = mBurst - 1;
+            mUpdated[slot] = now;
+            ++mSize;
+            return true;
+        }
+
+        double tokens = Math.min(mBurst, mTokens[slot] + (now - mUpdated[slot]) * mTokensPerNano);
+        mUpdated[slot] = now;
+        if (tokens < 1) {
+            mTokens[slot] = tokens;
+            return false;
+        }
+
+        mTokens[slot] = tokens - 1;
+        return true;
+    }
+
+    /**
+     * @return The number of senders currently tracked
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    private int find(long most, long least) {
+        int mask = mUpdated.length - 1;
+        int slot = hash(most, least) & mask;
+        while (mUpdated[slot] != Empty && (mMost[slot] != most || mLeast[slot] != least))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static int hash(long most, long least) {
+        long hash = most * 0x9E3779B97F4A7C15L ^ least;
+        hash ^= hash >>> 32;
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 29));
+    }
+
+    private void allocate(int capacity) {
+        mMost = new long[capacity];
+        mLeast = new long[capacity];
+        mTokens = new double[capacity];
+        mUpdated = new long[capacity];
+        Arrays.fill(mUpdated, Empty);
+        mSize = 0;
+    }
+
+    /**
+     * Rehashes live buckets, dropping ones that have completely refilled.
+     * The table grows or shrinks to keep it at most a quarter full.
+     */
+    private void rebuild(long now) {
+        long[] most = mMost;
+        long[] least = mLeast;
+        double[] tokens = mTokens;
+        long[] updated = mUpdated;
+
+        int live = 0;
+        for (int i = 0; i < updated.length; ++i) {
+            if (updated[i] != Empty && !isIdle(tokens[i], updated[i], now))
+                ++live;
+        }
+
+        int capacity = MinCapacity;
+        while (capacity < (live + 1) * 4)
+            capacity <<= 1;
+
+        allocate(capacity);
+        for (int i = 0; i < updated.length; ++i) {
+            if (updated[i] == Empty || isIdle(tokens[i], updated[i], now))
+                continue;
+
+            int slot = find(most[i], least[i]);
+            mMost[slot] = most[i];
+            mLeast[slot] = least[i];
+            mTokens[slot] = tokens[i];
+            mUpdated[slot] = updated[i];
+            ++mSize;
+        }
+
+        mLastPurge = now;
+    }
+
+    private boolean isIdle(double tokens, long updated, long now) {
+        return tokens + (now - updated) * mTokensPerNano >= mBurst;
+    }
+}
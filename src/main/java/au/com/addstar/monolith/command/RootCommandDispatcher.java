@@ -45,8 +45,15 @@ public class RootCommandDispatcher extends CommandDispatcher implements CommandE
         return tabComplete(sender, "/", label, args);
     }
 
+    /**
+     * Makes this dispatcher handle a command. On servers with asynchronous tab completion,
+     * commands implementing {@link IAsyncTabCompleter} are also completed off the main thread.
+     *
+     * @param command The command to handle
+     */
     public void registerAs(PluginCommand command) {
         command.setExecutor(this);
         command.setTabCompleter(this);
+        AsyncTabCompleteBridge.register(this, command);
     }
 }
@@ -24,6 +24,7 @@ package au.com.addstar.monolith.internal.lookup;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
 
@@ -50,6 +51,10 @@ public class EnchantDB extends FlatDb<Enchantment> {
         return mEnchantMap.get(item);
     }
 
+    public Set<String> getAllNames() {
+        return Collections.unmodifiableSet(mNameMap.keySet());
+    }
+
     public void load(InputStream stream) throws IOException {
         super.load(stream);
         for (Enchantment enchant : Enchantment.values()) {
@@ -22,6 +22,7 @@
 
 package au.com.addstar.monolith.internal.lookup;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
 
@@ -50,6 +51,10 @@ public class ItemDB extends FlatDb<Material> {
         return mIdMap.get(mat);
     }
 
+    public Set<String> getAllNames() {
+        return Collections.unmodifiableSet(mNameMap.keySet());
+    }
+
     @Override
     Material getObject(String... string) {
         return Material.matchMaterial(string[0]);
@@ -93,6 +93,16 @@ public class EntityDefinition {
             return null;
         }
 
+        applySubType(entity);
+        return entity;
+    }
+
+    /**
+     * Applies the subtype of this definition, if any, to an entity of this type
+     *
+     * @param entity The entity to change
+     */
+    public void applySubType(Entity entity) {
         if (mSubType != null) {
             switch (mType) {
                 case CREEPER:
@@ -110,8 +120,6 @@ public class EntityDefinition {
                     break;
             }
         }
-
-        return entity;
     }
 
     @Override
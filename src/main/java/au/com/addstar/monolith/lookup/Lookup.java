@@ -172,6 +172,20 @@ public class Lookup {
         return mEntityDB.getAllTypes();
     }
 
+    /**
+     * @return Every name usable with {@link #findItemByName(String)}
+     */
+    public static Set<String> getAllItemNames() {
+        return mNameDB.getAllNames();
+    }
+
+    /**
+     * @return Every name usable with {@link #findEnchantmentByName(String)}
+     */
+    public static Set<String> getAllEnchantmentNames() {
+        return mEnchantDB.getAllNames();
+    }
+
     /**
      * Finds the minecraft name of the specified material
      *
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import   net.minecraft.server.v1_16_R2.NBTBase;
+import   net.minecraft.server.v1_16_R2.NBTCompressedStreamTools;
+import   net.minecraft.server.v1_16_R2.NBTReadLimiter;
+import   net.minecraft.server.v1_16_R2.NBTTagCompound;
+import   net.minecraft.server.v1_16_R2.NBTTagList;
+
+/**
+ * Packs a list of properties into a single byte array.
+ * <br>
+ * The layout is a version byte, a table of owner UUIDs, then each property as
+ * an index into the owner table, its name, its type and its value.
+ * Custom values keep their NBT compound, written in binary form.
+ */
+public final class CompactPropertyFormat {
+    private static final byte VERSION = 1;
+    // Read budget for nested NBT, in the units used by NBTReadLimiter
+    private static final long NBTBudgetBase = 2097152L;
+    private static final long NBTBudgetPerByte = 64L;
+
+    private CompactPropertyFormat() {
+    }
+
+    /**
+     * Encodes a list of property compounds.
+     * Entries that are not compounds are skipped.
+     *
+     * @param properties The list of properties
+     * @return The encoded bytes
+     */
+    public static byte[] encode(NBTTagList properties) {
+        Map<UUID, Integer> owners = Maps.newLinkedHashMap();
+        List<NBTTagCompound> tags = Lists.newArrayListWithCapacity(properties.size());
+        for (NBTBase base : properties) {
+            if (!(base instanceof NBTTagCompound))
+                continue;
+
+            NBTTagCompound tag = (NBTTagCompound) base;
+            owners.putIfAbsent(new UUID(tag.getLong("UUIDMost"), tag.getLong("UUIDLeast")), owners.size());
+            tags.add(tag);
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeByte(VERSION);
+            writeVarInt(out, owners.size());
+            for (UUID owner : owners.keySet()) {
+                out.writeLong(owner.getMostSignificantBits());
+                out.writeLong(owner.getLeastSignificantBits());
+            }
+
+            writeVarInt(out, tags.size());
+            for (NBTTagCompound tag : tags) {
+                writeVarInt(out, owners.get(new UUID(tag.getLong("UUIDMost"), tag.getLong("UUIDLeast"))));
+                writeString(out, tag.getString("name"));
+
+                byte type = tag.getByte("type");
+                out.writeByte(type);
+                switch (type) {
+                    case PropertyBase.TYPE_STRING:
+                        writeString(out, tag.getString("value"));
+                        break;
+                    case PropertyBase.TYPE_INTEGER:
+                        writeVarInt(out, tag.getInt("value"));
+                        break;
+                    case PropertyBase.TYPE_FLOAT:
+                        out.writeDouble(tag.getDouble("value"));
+                        break;
+                    case PropertyBase.TYPE_CUSTOM:
+                        out.writeBoolean(tag.getBoolean("codec"));
+                        NBTCompressedStreamTools.a(tag.getCompound("value"), (DataOutput) out);
+                        break;
+                    default:
+                        // Unknown types are kept whole
+                        NBTCompressedStreamTools.a(tag, (DataOutput) out);
+                        break;
+                }
+            }
+
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Decodes bytes written by {@link #encode(NBTTagList)} back into a list of property compounds
+     *
+     * @param data The encoded bytes
+     * @return A new list of properties
+     * @throws IllegalArgumentException if the data is not valid
+     */
+    public static NBTTagList decode(byte[] data) throws IllegalArgumentException {
+        NBTTagList properties = new NBTTagList();
+        if (data.length == 0)
+            return properties;
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+            byte version = in.readByte();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unknown compact property version " + version);
+
+            // Nested values are read with a budget so corrupt lengths cannot allocate huge arrays
+            NBTReadLimiter limiter = new NBTReadLimiter(NBTBudgetBase + NBTBudgetPerByte * data.length);
+
+            UUID[] owners = new UUID[readLength(in, 16)];
+            for (int i = 0; i < owners.length; ++i)
+                owners[i] = new UUID(in.readLong(), in.readLong());
+
+            // Each property is at least an owner, a name length and a type
+            int count = readLength(in, 3);
+            for (int i = 0; i < count; ++i) {
+                UUID owner = owners[readVarInt(in)];
+                String name = readString(in);
+                byte type = in.readByte();
+
+                if (type != PropertyBase.TYPE_STRING && type != PropertyBase.TYPE_INTEGER
+                        && type != PropertyBase.TYPE_FLOAT && type != PropertyBase.TYPE_CUSTOM) {
+                    properties.add(NBTCompressedStreamTools.a(in, limiter));
+                    continue;
+                }
+
+                NBTTagCompound tag = new NBTTagCompound();
+                tag.setString("name", name);
+                tag.setLong("UUIDLeast", owner.getLeastSignificantBits());
+                tag.setLong("UUIDMost", owner.getMostSignificantBits());
+                tag.setByte("type", type);
+
+                switch (type) {
+                    case PropertyBase.TYPE_STRING:
+                        tag.setString("value", readString(in));
+                        break;
+                    case PropertyBase.TYPE_INTEGER:
+                        tag.setInt("value", readVarInt(in));
+                        break;
+                    case PropertyBase.TYPE_FLOAT:
+                        tag.setDouble("value", in.readDouble());
+                        break;
+                    default:
+                        if (in.readBoolean())
+                            tag.setBoolean("codec", true);
+                        tag.set("value", NBTCompressedStreamTools.a(in, limiter));
+                        break;
+                }
+
+                properties.add(tag);
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // The NBT reader reports oversized or malformed tags with runtime exceptions
+            throw new IllegalArgumentException("Corrupt compact property data", e);
+        }
+
+        return properties;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IOException("VarInt is too long");
+    }
+
+    // Length prefixed UTF-8, without the 64k limit of writeUTF
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a count of elements, checking that the remaining data could hold them
+     */
+    private static int readLength(DataInputStream in, int minElementSize) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || (long) length * minElementSize > in.available())
+            throw new IOException("Length " + length + " is out of range");
+        return length;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in, 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -25,11 +25,14 @@ package au.com.addstar.monolith.properties;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.plugin.Plugin;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 
 import   net.minecraft.server.v1_16_R2.NBTBase;
@@ -45,9 +48,21 @@ import   net.minecraft.server.v1_16_R2.NBTTagString;
 
 /**
  * Represents a property that holds any object that implements the
- * {@link ConfigurationSerializable} interface
+ * {@link ConfigurationSerializable} interface.
+ * <br>
+ * {@link #getValue()} decodes a new object each time. {@link #getValueShared()}
+ * keeps the decoded object for callers that only read it.
  */
 public class CustomProperty extends PropertyBase<ConfigurationSerializable> {
+    private static final String CodecKey = "codec";
+
+    // Weak values so classes from other plugins can still be unloaded
+    private static final Map<String, Class<? extends ConfigurationSerializable>> classCache = new MapMaker().weakValues().makeMap();
+    private static final Map<Class<?>, PropertyCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    // Decoded by getValueShared, dropped whenever the value is set
+    private ConfigurationSerializable cachedValue;
+
     /**
      * Creates a new custom valued property
      *
@@ -65,35 +80,131 @@ public class CustomProperty extends PropertyBase<ConfigurationSerializable> {
         super(tag);
     }
 
+    /**
+     * Registers a codec to use instead of the map based serialization
+     * for values of exactly the given class.
+     *
+     * @param type  The class of value handled
+     * @param codec The codec to use
+     * @param <T>   The type of value
+     */
+    public static <T extends ConfigurationSerializable> void registerCodec(Class<T> type, PropertyCodec<T> codec) {
+        codecs.put(type, codec);
+    }
+
+    /**
+     * Removes a codec registered with {@link #registerCodec(Class, PropertyCodec)}
+     *
+     * @param type The class of value handled
+     */
+    public static void unregisterCodec(Class<? extends ConfigurationSerializable> type) {
+        codecs.remove(type);
+    }
+
+    /**
+     * Removes every codec belonging to a plugin, either for one of its classes or
+     * implemented by it. Monolith calls this when a plugin is disabled.
+     *
+     * @param plugin The plugin
+     */
+    public static void unregisterCodecs(Plugin plugin) {
+        ClassLoader loader = plugin.getClass().getClassLoader();
+        codecs.entrySet().removeIf(entry -> entry.getKey().getClassLoader() == loader
+                || entry.getValue().getClass().getClassLoader() == loader);
+    }
+
+    /**
+     * Gets the value of this property, decoded into a new object that the caller may modify
+     *
+     * @return The value
+     */
     @Override
     public ConfigurationSerializable getValue() {
-        NBTTagCompound root = tag.getCompound("value");
+        return decode(tag.getCompound("value"));
+    }
+
+    /**
+     * Gets the value of this property without decoding it again when it has not
+     * changed. The returned object is shared between calls and must not be modified,
+     * changes made to it are not saved and would be seen by later callers.
+     *
+     * @return The value
+     */
+    public ConfigurationSerializable getValueShared() {
+        if (cachedValue == null)
+            cachedValue = getValue();
+        return cachedValue;
+    }
+
+    /**
+     * Drops the value kept by {@link #getValueShared()}, for when the tag has
+     * been changed other than through this property
+     */
+    void invalidateCache() {
+        cachedValue = null;
+    }
+
+    private ConfigurationSerializable decode(NBTTagCompound root) {
+        if (tag.getBoolean(CodecKey)) {
+            Class<? extends ConfigurationSerializable> clazz = resolveClass(root.getString("=="));
+            @SuppressWarnings("unchecked")
+            PropertyCodec<? extends ConfigurationSerializable> codec = (PropertyCodec<? extends ConfigurationSerializable>) codecs.get(clazz);
+            if (codec == null)
+                throw new IllegalStateException("No codec is registered for " + clazz.getName());
+
+            return codec.decode(root);
+        }
+
         Map<String, ?> values = fromNBTCompound(root);
 
-        if (values.containsKey("==")) {
-            try {
-                Class<?> rawClass = Class.forName((String) values.get("=="));
-                if (ConfigurationSerializable.class.isAssignableFrom(rawClass)) {
-                    Class<? extends ConfigurationSerializable> clazz = rawClass.asSubclass(ConfigurationSerializable.class);
-                    return ConfigurationSerialization.deserializeObject(values, clazz);
-                } else {
-                    throw new IllegalStateException("This value cannot be deserialized");
-                }
-            } catch (ClassNotFoundException e) {
-                throw new IllegalStateException("This value cannot be deserialized");
-            }
-        } else
+        if (values.containsKey("=="))
+            return ConfigurationSerialization.deserializeObject(values, resolveClass((String) values.get("==")));
+        else
             return ConfigurationSerialization.deserializeObject(values);
     }
 
+    private static Class<? extends ConfigurationSerializable> resolveClass(String name) {
+        Class<? extends ConfigurationSerializable> clazz = classCache.get(name);
+        if (clazz != null)
+            return clazz;
+
+        try {
+            Class<?> rawClass = Class.forName(name);
+            if (!ConfigurationSerializable.class.isAssignableFrom(rawClass))
+                throw new IllegalStateException("This value cannot be deserialized");
+
+            clazz = rawClass.asSubclass(ConfigurationSerializable.class);
+            classCache.put(name, clazz);
+            return clazz;
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("This value cannot be deserialized");
+        }
+    }
+
     @Override
+    @SuppressWarnings("unchecked")
     public void setValue(ConfigurationSerializable value) {
-        Map<String, Object> serialized = value.serialize();
+        NBTTagCompound encoded;
+        PropertyCodec<ConfigurationSerializable> codec = (PropertyCodec<ConfigurationSerializable>) codecs.get(value.getClass());
+        if (codec != null) {
+            encoded = new NBTTagCompound();
+            codec.encode(value, encoded);
+            encoded.setString("==", value.getClass().getName());
+            tag.setBoolean(CodecKey, true);
+        } else {
+            Map<String, Object> serialized = value.serialize();
 
-        if (!serialized.containsKey("=="))
-            serialized.put("==", value.getClass().getName());
+            if (!serialized.containsKey("=="))
+                serialized.put("==", value.getClass().getName());
+
+            encoded = toNBT(serialized);
+            tag.remove(CodecKey);
+        }
 
-        tag.set("value", toNBT(serialized));
+        tag.set("value", encoded);
+        // Not the value itself, the caller may go on to modify it
+        cachedValue = null;
+        changed();
     }
 
     private NBTTagCompound toNBT(Map<String, Object> map) {
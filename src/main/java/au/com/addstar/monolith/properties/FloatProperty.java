@@ -55,5 +55,6 @@ public class FloatProperty extends PropertyBase<Double> {
     @Override
     public void setValue(Double value) {
         tag.setDouble("value", value);
+        changed();
     }
 }
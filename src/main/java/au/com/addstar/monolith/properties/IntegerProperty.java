@@ -55,5 +55,6 @@ public class IntegerProperty extends PropertyBase<Integer> {
     @Override
     public void setValue(Integer value) {
         tag.setInt("value", value);
+        changed();
     }
 }
@@ -45,11 +45,20 @@ public abstract class PropertyBase<T> {
 
     protected NBTTagCompound tag;
 
+    // The name and owner never change, so are read from the tag at most once
+    private String name;
+    private UUID owner;
+
+    // Notified when the value changes, set by the container holding this property
+    Runnable changeListener;
+
     protected PropertyBase(String name, UUID owner) {
         tag = new NBTTagCompound();
         tag.setString("name", name);
         tag.setLong("UUIDLeast", owner.getLeastSignificantBits());
         tag.setLong("UUIDMost", owner.getMostSignificantBits());
+        this.name = name;
+        this.owner = owner;
     }
 
     protected PropertyBase(NBTTagCompound tag) {
@@ -60,13 +69,23 @@ public abstract class PropertyBase<T> {
         return tag;
     }
 
+    /**
+     * Must be called by subclasses after the value has been changed
+     */
+    protected final void changed() {
+        if (changeListener != null)
+            changeListener.run();
+    }
+
     /**
      * Gets the name of this property
      *
      * @return A name
      */
     public final String getName() {
-        return tag.getString("name");
+        if (name == null)
+            name = tag.getString("name");
+        return name;
     }
 
     /**
@@ -76,7 +95,9 @@ public abstract class PropertyBase<T> {
      * @return A UUID
      */
     public final UUID getOwner() {
-        return new UUID(tag.getLong("UUIDMost"), tag.getLong("UUIDLeast"));
+        if (owner == null)
+            owner = new UUID(tag.getLong("UUIDMost"), tag.getLong("UUIDLeast"));
+        return owner;
     }
 
     /**
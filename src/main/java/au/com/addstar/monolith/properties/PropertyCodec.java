@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.properties;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+
+import   net.minecraft.server.v1_16_R2.NBTTagCompound;
+
+/**
+ * Converts a {@link ConfigurationSerializable} type directly to and from NBT.
+ * Registering a codec with {@link CustomProperty#registerCodec(Class, PropertyCodec)}
+ * lets {@link CustomProperty} skip the intermediate map and reflective
+ * deserialization for that type.
+ * <br>
+ * A codec must be registered before any property that was written with it is read.
+ *
+ * @param <T> The type handled by this codec
+ */
+public interface PropertyCodec<T extends ConfigurationSerializable> {
+    /**
+     * Writes a value into the given compound
+     *
+     * @param value The value to write
+     * @param tag   An empty compound to write into
+     */
+    void encode(T value, NBTTagCompound tag);
+
+    /**
+     * Reads a value written by {@link #encode(ConfigurationSerializable, NBTTagCompound)}
+     *
+     * @param tag The compound to read from
+     * @return The decoded value
+     */
+    T decode(NBTTagCompound tag);
+}
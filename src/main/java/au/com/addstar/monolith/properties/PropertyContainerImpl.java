@@ -22,7 +22,10 @@
 
 package au.com.addstar.monolith.properties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
@@ -33,11 +36,36 @@ import   net.minecraft.server.v1_16_R2.NBTBase;
 import   net.minecraft.server.v1_16_R2.NBTTagCompound;
 import   net.minecraft.server.v1_16_R2.NBTTagList;
 
+/**
+ * Properties stored in a list of compounds. The list is indexed on first access
+ * and the index is kept up to date by changes made through this container.
+ * Anything else that changes the list must call {@link #invalidate()}.
+ */
 public class PropertyContainerImpl implements PropertyContainer {
     private final NBTTagList root;
 
+    // Properties in the same order as root, null where an entry is not a known property.
+    // Built on first access along with the index.
+    private ArrayList<PropertyBase<?>> entries;
+    // Owner to name to position in root
+    private HashMap<UUID, HashMap<String, Integer>> index;
+
+    private final Runnable onChange;
+
     public PropertyContainerImpl(NBTTagList root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates a container that is told about every change made through it,
+     * including changes to the values of properties it holds.
+     *
+     * @param root     The list of properties
+     * @param onChange Called after each change, or null
+     */
+    public PropertyContainerImpl(NBTTagList root, Runnable onChange) {
         this.root = root;
+        this.onChange = onChange;
     }
 
     private static PropertyBase<?> loadProperty(NBTTagCompound tag) {
@@ -59,23 +87,84 @@ public class PropertyContainerImpl implements PropertyContainer {
         return root;
     }
 
-    @Override
-    public PropertyBase<?> get(String name, UUID owner) throws PropertyClassException {
-        for (NBTBase aRoot : root) {
-            if (aRoot instanceof NBTTagCompound) {
-                NBTTagCompound raw = (NBTTagCompound) aRoot;
-                PropertyBase<?> property = loadProperty(raw);
-                if (property != null && property.getName() != null) {
-                    if (property.getName().equals(name) && property.getOwner().equals(owner))
-                        return property;
-                }
-            } else {
-                throw new PropertyClassException(aRoot.toString() + " is not a Compound " +
-                        "tag");
+    /**
+     * Discards the index so it is rebuilt on next access. Must be called after
+     * the list is changed other than through this container.
+     */
+    public void invalidate() {
+        if (entries != null) {
+            // Properties already handed out read the same tags
+            for (PropertyBase<?> property : entries) {
+                if (property instanceof CustomProperty)
+                    ((CustomProperty) property).invalidateCache();
             }
         }
 
-        return null;
+        entries = null;
+        index = null;
+    }
+
+    private void ensureIndexed() {
+        // The size check catches entries added or removed by plain list access
+        if (entries != null && entries.size() == root.size())
+            return;
+
+        entries = new ArrayList<>(root.size());
+        for (NBTBase base : root) {
+            if (base instanceof NBTTagCompound)
+                entries.add(attach(loadProperty((NBTTagCompound) base)));
+            else
+                entries.add(null);
+        }
+
+        reindex();
+    }
+
+    private void reindex() {
+        index = new HashMap<>();
+        for (int i = 0; i < entries.size(); ++i) {
+            PropertyBase<?> property = entries.get(i);
+            if (property == null || property.getName() == null)
+                continue;
+
+            // The first of any duplicates wins
+            index.computeIfAbsent(property.getOwner(), k -> new HashMap<>()).putIfAbsent(property.getName(), i);
+        }
+    }
+
+    private int indexOf(String name, UUID owner) {
+        ensureIndexed();
+        HashMap<String, Integer> names = index.get(owner);
+        if (names == null)
+            return -1;
+
+        Integer position = names.get(name);
+        return position == null ? -1 : position;
+    }
+
+    private PropertyBase<?> attach(PropertyBase<?> property) {
+        if (property != null && onChange != null)
+            property.changeListener = onChange;
+        return property;
+    }
+
+    private void changed() {
+        if (onChange != null)
+            onChange.run();
+    }
+
+    private void removeAt(int position) {
+        root.remove(position);
+        entries.remove(position);
+    }
+
+    @Override
+    public PropertyBase<?> get(String name, UUID owner) throws PropertyClassException {
+        int position = indexOf(name, owner);
+        if (position < 0)
+            return null;
+
+        return entries.get(position);
     }
 
     @Override
@@ -124,48 +213,56 @@ public class PropertyContainerImpl implements PropertyContainer {
 
     @Override
     public void add(PropertyBase<?> property) {
-        // Remove any existing one if any
-        remove(property.getName(), property.getOwner());
-        root.add(property.getTag());
+        // Replace any existing one in place
+        int position = indexOf(property.getName(), property.getOwner());
+        attach(property);
+        if (position >= 0) {
+            root.set(position, property.getTag());
+            entries.set(position, property);
+        } else {
+            root.add(property.getTag());
+            entries.add(property);
+            index.computeIfAbsent(property.getOwner(), k -> new HashMap<>()).put(property.getName(), entries.size() - 1);
+        }
+
+        changed();
     }
 
     @Override
     public void remove(String name, UUID owner) {
-        for (int i = 0; i < root.size(); ++i) {
-            if (root.get(i) instanceof NBTTagCompound) {
-                NBTTagCompound raw = (NBTTagCompound) root.get(i);
-                PropertyBase<?> property = loadProperty(raw);
-                if (property.getName() != null) {
-                    if (property.getName().equals(name) && property.getOwner().equals(owner)) {
-                        root.remove(i);
-                        break;
-                    }
-                }
-            }
+        int position = indexOf(name, owner);
+        if (position < 0)
+            return;
 
-        }
+        removeAt(position);
+        reindex();
+        changed();
     }
 
     @Override
     public void clear(UUID owner) {
-        for (int i = 0; i < root.size(); ++i) {
-            if (root.get(i) instanceof NBTTagCompound) {
-                NBTTagCompound raw = (NBTTagCompound) root.get(i);
-                PropertyBase<?> property = loadProperty(raw);
-                if (property.getOwner() != null) {
-                    if (property.getOwner().equals(owner)) {
-                        root.remove(i);
-                        --i;
-                    }
-                }
-            }
+        ensureIndexed();
+        if (!index.containsKey(owner))
+            return;
+
+        for (int i = entries.size() - 1; i >= 0; --i) {
+            PropertyBase<?> property = entries.get(i);
+            if (property != null && owner.equals(property.getOwner()))
+                removeAt(i);
         }
+
+        reindex();
+        changed();
     }
 
     @Override
     public void clear() {
         while (!root.isEmpty())
             root.remove(0);
+
+        entries = new ArrayList<>();
+        index = new HashMap<>();
+        changed();
     }
 
     @Override
@@ -186,28 +283,38 @@ public class PropertyContainerImpl implements PropertyContainer {
     private class PropertyIterator implements Iterator<PropertyBase<?>> {
         private int index = 0;
 
+        PropertyIterator() {
+            ensureIndexed();
+        }
+
         @Override
         public boolean hasNext() {
-            return index < root.size();
+            return index < entries.size();
         }
 
         @Override
         public PropertyBase<?> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            PropertyBase<?> property = entries.get(index);
             NBTBase base = root.get(index++);
-            if (base instanceof NBTTagCompound) {
-                NBTTagCompound raw = (NBTTagCompound) base;
-                return loadProperty(raw);
-            } else {
+            if (property == null && !(base instanceof NBTTagCompound)) {
                 throw new PropertyClassException(base.toString() + " is not a compound tag " +
                         "compatible" +
                         " with properties");
             }
+
+            return property;
         }
 
         @Override
         public void remove() {
-            if (index > 0)
-                root.remove(--index);
+            if (index > 0) {
+                removeAt(--index);
+                reindex();
+                changed();
+            }
         }
     }
 }
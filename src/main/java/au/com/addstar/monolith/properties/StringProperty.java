@@ -55,6 +55,7 @@ public class StringProperty extends PropertyBase<String> {
     @Override
     public void setValue(String value) {
         tag.setString("value", value);
+        changed();
     }
 }
 
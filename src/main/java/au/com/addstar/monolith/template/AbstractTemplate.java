@@ -22,15 +22,33 @@
 
 package au.com.addstar.monolith.template;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.commons.lang.Validate;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public abstract class AbstractTemplate<HolderType, Holder> {
+    private static final MethodHandle NoOp;
+
+    static {
+        try {
+            MethodHandle noOp = MethodHandles.lookup().findStatic(AbstractTemplate.class, "noOp", MethodType.methodType(void.class));
+            NoOp = MethodHandles.dropArguments(noOp, 0, Object.class);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     private final Map<TemplateSetting<HolderType, Holder, Object>, Object> mSettings;
+    // All settings folded into one (Object)void handle, built when first applied
+    private MethodHandle mPlan;
 
     public AbstractTemplate() {
         mSettings = Maps.newIdentityHashMap();
@@ -45,6 +63,7 @@ public abstract class AbstractTemplate<HolderType, Holder> {
             throw new IllegalArgumentException("Setting " + setting.getNames()[0] + " does not apply to " + getType());
 
         mSettings.put((TemplateSetting<HolderType, Holder, Object>) setting, value);
+        mPlan = null;
         return this;
     }
 
@@ -52,6 +71,7 @@ public abstract class AbstractTemplate<HolderType, Holder> {
         Validate.notNull(setting);
 
         mSettings.remove(setting);
+        mPlan = null;
 
         return this;
     }
@@ -60,9 +80,38 @@ public abstract class AbstractTemplate<HolderType, Holder> {
         return mSettings.containsKey(setting);
     }
 
+    private static void noOp() {
+    }
+
+    private MethodHandle compile() {
+        List<MethodHandle> steps = Lists.newArrayListWithCapacity(mSettings.size());
+        for (Entry<TemplateSetting<HolderType, Holder, Object>, Object> entry : mSettings.entrySet())
+            steps.add(entry.getKey().bind(entry.getValue()));
+
+        // Each fold runs the step and then the rest of the plan
+        MethodHandle plan = NoOp;
+        for (int i = steps.size() - 1; i >= 0; --i)
+            plan = MethodHandles.foldArguments(plan, steps.get(i));
+
+        return plan;
+    }
+
     protected void applyTemplate(Holder object) {
+        MethodHandle plan = mPlan;
+        if (plan == null) {
+            plan = compile();
+            mPlan = plan;
+        }
+
         // Apply specified settings
-        for (Entry<TemplateSetting<HolderType, Holder, Object>, Object> entry : mSettings.entrySet())
-            entry.getKey().apply(object, entry.getValue());
+        try {
+            plan.invokeExact((Object) object);
+        }
+        // Any exceptions should be extremely rare
+        catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
     }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.template;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import au.com.addstar.monolith.Monolith;
+import au.com.addstar.monolith.util.Crafty;
+
+/**
+ * Spawns a large number of entities from a template, spread over several ticks.
+ * <br>
+ * The chunks at every location are loaded first, asynchronously where the server
+ * supports it, and held loaded with a plugin chunk ticket until spawning is done.
+ * Entities are then spawned up to a fixed number per tick.
+ */
+public class BulkSpawner implements Runnable {
+    private static final int DefaultPerTick = 20;
+    // Chunks loaded per tick when they must be loaded synchronously
+    private static final int ChunksPerTick = 4;
+
+    // World.getChunkAtAsync(int, int) is only available on Paper
+    private static final MethodHandle World_GetChunkAtAsync = Crafty.findMethod(World.class, "getChunkAtAsync", CompletableFuture.class, int.class, int.class);
+
+    // The number of running spawners holding each chunk. A plugin has at most one
+    // ticket per chunk, so it is only removed when the last of them is done.
+    private static final Map<ChunkRef, Integer> TicketHolders = Maps.newHashMap();
+
+    private final Plugin mPlugin;
+    private final EntityTemplate mTemplate;
+    private final List<Location> mLocations;
+    private final int mPerTick;
+
+    private final List<ChunkRef> mChunks = Lists.newArrayList();
+    private final Queue<ChunkRef> mSyncLoads = new ArrayDeque<>();
+    private CompletableFuture<Void> mAsyncLoads;
+
+    private final List<Entity> mSpawned;
+    private final CompletableFuture<List<Entity>> mResult = new CompletableFuture<>();
+    private int mNext;
+    private BukkitTask mTask;
+    private boolean mFinished;
+
+    private BulkSpawner(Plugin plugin, EntityTemplate template, List<Location> locations, int perTick) {
+        mPlugin = plugin;
+        mTemplate = template;
+        mLocations = locations;
+        mPerTick = perTick;
+        mSpawned = Lists.newArrayListWithCapacity(locations.size());
+    }
+
+    /**
+     * Spawns entities from a template, at most 20 per tick.
+     * Must be called from the main thread.
+     *
+     * @param template  The template of the entities
+     * @param count     The number of entities to spawn
+     * @param placement Where to spawn each entity
+     * @return A future that completes on the main thread with the spawned entities
+     */
+    public static CompletableFuture<List<Entity>> spawn(EntityTemplate template, int count, Placement placement) {
+        return spawn(template, count, placement, DefaultPerTick);
+    }
+
+    /**
+     * Spawns entities from a template, spread over as many ticks as needed.
+     * Must be called from the main thread.
+     * Cancelling the returned future stops any further spawns.
+     *
+     * @param template  The template of the entities
+     * @param count     The number of entities to spawn
+     * @param placement Where to spawn each entity
+     * @param perTick   The most entities to spawn in one tick
+     * @return A future that completes on the main thread with the spawned entities.
+     * Entities that could not be spawned are left out.
+     */
+    public static CompletableFuture<List<Entity>> spawn(EntityTemplate template, int count, Placement placement, int perTick) {
+        Validate.notNull(template);
+        Validate.notNull(placement);
+        Validate.isTrue(count >= 0, "Count cannot be negative");
+        Validate.isTrue(perTick > 0, "Per tick budget must be at least 1");
+
+        List<Location> locations = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; ++i) {
+            Location location = placement.getLocation(i, count);
+            Validate.notNull(location.getWorld(), "Placement locations must have a world");
+            locations.add(location);
+        }
+
+        BulkSpawner spawner = new BulkSpawner(Monolith.getInstance(), template, locations, perTick);
+        spawner.start();
+        return spawner.mResult;
+    }
+
+    private void start() {
+        // Work out which chunks are needed
+        List<CompletableFuture<?>> loads = Lists.newArrayList();
+        Set<ChunkRef> seen = Sets.newHashSet();
+        for (Location location : mLocations) {
+            ChunkRef chunk = new ChunkRef(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            if (!seen.add(chunk))
+                continue;
+
+            mChunks.add(chunk);
+            if (chunk.world.isChunkLoaded(chunk.x, chunk.z)) {
+                chunk.hold(mPlugin);
+            } else if (World_GetChunkAtAsync != null) {
+                loads.add(chunk.loadAsync().thenRun(() -> {
+                    // A load may finish after the spawn was cancelled
+                    if (!mFinished)
+                        chunk.hold(mPlugin);
+                }));
+            } else {
+                mSyncLoads.add(chunk);
+            }
+        }
+
+        mAsyncLoads = CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+        mTask = Bukkit.getScheduler().runTaskTimer(mPlugin, this, 0, 1);
+    }
+
+    @Override
+    public void run() {
+        if (mResult.isDone()) {
+            // Cancelled by the caller
+            finish();
+            return;
+        }
+
+        // Wait for every chunk first
+        if (!mSyncLoads.isEmpty()) {
+            for (int i = 0; i < ChunksPerTick && !mSyncLoads.isEmpty(); ++i) {
+                ChunkRef chunk = mSyncLoads.poll();
+                chunk.world.getChunkAt(chunk.x, chunk.z);
+                chunk.hold(mPlugin);
+            }
+            return;
+        }
+
+        if (!mAsyncLoads.isDone())
+            return;
+
+        if (mAsyncLoads.isCompletedExceptionally()) {
+            finish();
+            try {
+                mAsyncLoads.join();
+            } catch (CompletionException e) {
+                mResult.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            } catch (RuntimeException e) {
+                mResult.completeExceptionally(e);
+            }
+            return;
+        }
+
+        try {
+            for (int i = 0; i < mPerTick && mNext < mLocations.size(); ++i) {
+                Entity entity = mTemplate.createAt(mLocations.get(mNext++));
+                if (entity != null)
+                    mSpawned.add(entity);
+            }
+        } catch (RuntimeException e) {
+            finish();
+            mResult.completeExceptionally(e);
+            return;
+        }
+
+        if (mNext >= mLocations.size()) {
+            finish();
+            mResult.complete(Collections.unmodifiableList(mSpawned));
+        }
+    }
+
+    private void finish() {
+        mFinished = true;
+        if (mTask != null) {
+            mTask.cancel();
+            mTask = null;
+        }
+
+        for (ChunkRef chunk : mChunks)
+            chunk.release(mPlugin);
+        mChunks.clear();
+    }
+
+    /**
+     * Decides where each entity of a bulk spawn goes
+     */
+    @FunctionalInterface
+    public interface Placement {
+        /**
+         * Gets the location of one entity
+         *
+         * @param index The index of the entity, from 0
+         * @param count The total number of entities
+         * @return The location to spawn at
+         */
+        Location getLocation(int index, int count);
+
+        /**
+         * Places every entity at the same location
+         *
+         * @param location The location
+         * @return The placement
+         */
+        static Placement at(Location location) {
+            return (index, count) -> location.clone();
+        }
+
+        /**
+         * Spaces entities evenly around a horizontal circle
+         *
+         * @param center The center of the circle
+         * @param radius The radius of the circle
+         * @return The placement
+         */
+        static Placement circle(Location center, double radius) {
+            return (index, count) -> {
+                double angle = (Math.PI * 2 * index) / count;
+                return center.clone().add(Math.cos(angle) * radius, 0, Math.sin(angle) * radius);
+            };
+        }
+
+        /**
+         * Scatters entities randomly within a horizontal disc
+         *
+         * @param center The center of the disc
+         * @param radius The radius of the disc
+         * @param random The source of randomness
+         * @return The placement
+         */
+        static Placement scatter(Location center, double radius, Random random) {
+            return (index, count) -> {
+                double angle = random.nextDouble() * Math.PI * 2;
+                // Square root keeps the density even over the disc
+                double distance = Math.sqrt(random.nextDouble()) * radius;
+                return center.clone().add(Math.cos(angle) * distance, 0, Math.sin(angle) * distance);
+            };
+        }
+    }
+
+    private static class ChunkRef {
+        final World world;
+        final int x;
+        final int z;
+        boolean held;
+
+        ChunkRef(World world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Chunk> loadAsync() {
+            try {
+                return (CompletableFuture<Chunk>) World_GetChunkAtAsync.invoke(world, x, z);
+            } catch (Throwable e) {
+                CompletableFuture<Chunk> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+
+        void hold(Plugin plugin) {
+            if (held)
+                return;
+
+            held = true;
+            if (TicketHolders.merge(this, 1, Integer::sum) == 1)
+                world.addPluginChunkTicket(x, z, plugin);
+        }
+
+        void release(Plugin plugin) {
+            if (!held)
+                return;
+
+            held = false;
+            if (TicketHolders.merge(this, -1, Integer::sum) <= 0) {
+                TicketHolders.remove(this);
+                world.removePluginChunkTicket(x, z, plugin);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ChunkRef))
+                return false;
+
+            ChunkRef other = (ChunkRef) obj;
+            return x == other.x && z == other.z && world.equals(other.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * (31 * world.hashCode() + x)) + z;
+        }
+    }
+}
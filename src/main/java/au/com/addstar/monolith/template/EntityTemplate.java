@@ -47,4 +47,14 @@ public class EntityTemplate extends AbstractTemplate<EntityDefinition, Entity> {
         applyTemplate(entity);
         return entity;
     }
+
+    /**
+     * Applies this template to an existing entity of the template's type
+     *
+     * @param entity The entity to configure
+     */
+    public void applyTo(Entity entity) {
+        mType.applySubType(entity);
+        applyTemplate(entity);
+    }
 }
@@ -22,9 +22,23 @@
 
 package au.com.addstar.monolith.template;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 import org.apache.commons.lang.Validate;
 
 public abstract class TemplateSetting<HolderType, Holder, V> {
+    private static final MethodHandle Apply;
+
+    static {
+        try {
+            Apply = MethodHandles.lookup().findVirtual(TemplateSetting.class, "apply", MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     private final String[] mNames;
     private final V mDefault;
     private final Class<V> mClass;
@@ -69,4 +83,16 @@ public abstract class TemplateSetting<HolderType, Holder, V> {
     public void applyDefault(Holder object) {
         apply(object, mDefault);
     }
+
+    /**
+     * Gets a handle that applies the given value to a holder.
+     * The handle has the type {@code (Object)void}.
+     * Subclasses can override this to produce a more direct handle.
+     *
+     * @param value The value to apply
+     * @return A method handle
+     */
+    public MethodHandle bind(V value) {
+        return MethodHandles.insertArguments(Apply.bindTo(this), 1, value);
+    }
 }
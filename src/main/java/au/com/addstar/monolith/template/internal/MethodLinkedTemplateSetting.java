@@ -24,8 +24,11 @@ package au.com.addstar.monolith.template.internal;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
+import com.google.common.primitives.Primitives;
+
 import au.com.addstar.monolith.template.TemplateSetting;
 
 public abstract class MethodLinkedTemplateSetting<HolderType, T, V> extends TemplateSetting<HolderType, T, V> {
@@ -87,6 +90,21 @@ public abstract class MethodLinkedTemplateSetting<HolderType, T, V> extends Temp
         return handle;
     }
 
+    /**
+     * Binds the value straight into the setter, so applying it
+     * needs no boxing or type checks beyond the holder cast.
+     */
+    @Override
+    public MethodHandle bind(V value) {
+        Class<?> parameter = mHandle.type().parameterType(1);
+        // Let apply report these the same way it always has
+        if (value == null ? parameter.isPrimitive() : !Primitives.wrap(parameter).isInstance(value))
+            return super.bind(value);
+
+        return MethodHandles.insertArguments(mHandle, 1, value)
+                .asType(MethodType.methodType(void.class, Object.class));
+    }
+
     @Override
     public void apply(T object, V value) {
         try {
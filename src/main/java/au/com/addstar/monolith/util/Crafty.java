@@ -193,6 +193,48 @@ public final class Crafty {
         return field;
     }
 
+    /**
+     * Gets a handle that reads a class field, even if it is not public.
+     *
+     * @param holderClass a class
+     * @param fieldName   a field name
+     * @param fieldClass  the field class
+     * @return a method handle or {@code null} if not found
+     */
+    public static @Nullable
+    MethodHandle findGetter(final @Nullable Class<?> holderClass, final @NonNull String fieldName, final @Nullable Class<?> fieldClass) {
+        if (holderClass == null || fieldClass == null) return null;
+
+        try {
+            final Field field = needField(holderClass, fieldName);
+            if (field.getType() != fieldClass) return null;
+            return LOOKUP.unreflectGetter(field);
+        } catch (final NoSuchFieldException | IllegalAccessException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets a handle that writes a class field, even if it is not public.
+     *
+     * @param holderClass a class
+     * @param fieldName   a field name
+     * @param fieldClass  the field class
+     * @return a method handle or {@code null} if not found
+     */
+    public static @Nullable
+    MethodHandle findSetter(final @Nullable Class<?> holderClass, final @NonNull String fieldName, final @Nullable Class<?> fieldClass) {
+        if (holderClass == null || fieldClass == null) return null;
+
+        try {
+            final Field field = needField(holderClass, fieldName);
+            if (field.getType() != fieldClass) return null;
+            return LOOKUP.unreflectSetter(field);
+        } catch (final NoSuchFieldException | IllegalAccessException | SecurityException e) {
+            return null;
+        }
+    }
+
     /**
      * Gets an enum value.
      *
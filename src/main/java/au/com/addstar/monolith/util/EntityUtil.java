@@ -22,50 +22,531 @@
 
 package au.com.addstar.monolith.util;
 
-import com.google.common.collect.Lists;
-
 import au.com.addstar.monolith.BoundingBox;
 
-import   net.minecraft.server.v1_16_R2.AxisAlignedBB;
-
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.craftbukkit.v1_16_R2.CraftWorld;
-import org.bukkit.craftbukkit.v1_16_R2.entity.CraftEntity;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.util.Vector;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+/**
+ * Spatial entity queries.
+ * <br>
+ * When running on a supported CraftBukkit version the queries go straight to the
+ * server's entity lookup through method handles resolved once by {@link Crafty}.
+ * Otherwise the Bukkit API is used, so the same build works across server versions.
+ */
 public class EntityUtil {
+    private static final MethodHandle CraftEntity_GetHandle;
+    private static final MethodHandle NMSEntity_GetBukkitEntity;
+    private static final MethodHandle NMSEntity_GetBoundingBox;
+    private static final MethodHandle CraftWorld_GetHandle;
+    private static final MethodHandle NMSWorld_GetEntities;
+    private static final MethodHandle AABB_New;
+    private static final MethodHandle AABB_MinX;
+    private static final MethodHandle AABB_MinY;
+    private static final MethodHandle AABB_MinZ;
+    private static final MethodHandle AABB_MaxX;
+    private static final MethodHandle AABB_MaxY;
+    private static final MethodHandle AABB_MaxZ;
+    private static final Class<?> NMSEntityClass;
+    private static final boolean UseNMS;
+
+    static {
+        Class<?> craftEntity = Crafty.findCraftClass("entity.CraftEntity");
+        Class<?> craftWorld = Crafty.findCraftClass("CraftWorld");
+        Class<?> nmsEntity = Crafty.findNmsClass("Entity");
+        Class<?> nmsWorld = Crafty.findNmsClass("World");
+        Class<?> nmsWorldServer = Crafty.findNmsClass("WorldServer");
+        Class<?> aabb = Crafty.findNmsClass("AxisAlignedBB");
+        NMSEntityClass = nmsEntity;
+
+        // All handles are adapted to Object signatures so they can be called with invokeExact
+        CraftEntity_GetHandle = adapt(Crafty.findMethod(craftEntity, "getHandle", nmsEntity));
+        NMSEntity_GetBukkitEntity = adapt(Crafty.findMethod(nmsEntity, "getBukkitEntity", craftEntity));
+        NMSEntity_GetBoundingBox = adapt(Crafty.findMethod(nmsEntity, "getBoundingBox", aabb));
+        CraftWorld_GetHandle = adapt(Crafty.findMethod(craftWorld, "getHandle", nmsWorldServer));
+        // List<? extends Entity> a(Class<? extends Entity>, AxisAlignedBB, Predicate<? super Entity>)
+        NMSWorld_GetEntities = adapt(Crafty.findMethod(nmsWorld, "a", List.class, Class.class, aabb, Predicate.class));
+        AABB_New = adapt(Crafty.findConstructor(aabb, double.class, double.class, double.class, double.class, double.class, double.class));
+        AABB_MinX = adapt(Crafty.findGetter(aabb, "minX", double.class));
+        AABB_MinY = adapt(Crafty.findGetter(aabb, "minY", double.class));
+        AABB_MinZ = adapt(Crafty.findGetter(aabb, "minZ", double.class));
+        AABB_MaxX = adapt(Crafty.findGetter(aabb, "maxX", double.class));
+        AABB_MaxY = adapt(Crafty.findGetter(aabb, "maxY", double.class));
+        AABB_MaxZ = adapt(Crafty.findGetter(aabb, "maxZ", double.class));
+
+        UseNMS = CraftEntity_GetHandle != null && NMSEntity_GetBukkitEntity != null && NMSEntity_GetBoundingBox != null
+                && CraftWorld_GetHandle != null && NMSWorld_GetEntities != null && AABB_New != null
+                && AABB_MinX != null && AABB_MinY != null && AABB_MinZ != null
+                && AABB_MaxX != null && AABB_MaxY != null && AABB_MaxZ != null
+                && nmsEntity != null;
+    }
+
+    private static MethodHandle adapt(MethodHandle handle) {
+        if (handle == null)
+            return null;
+
+        MethodType type = handle.type().generic();
+        // Keep primitive doubles for the AABB accessors and constructor
+        for (int i = 0; i < handle.type().parameterCount(); ++i) {
+            if (handle.type().parameterType(i) == double.class)
+                type = type.changeParameterType(i, double.class);
+        }
+        if (handle.type().returnType() == double.class)
+            type = type.changeReturnType(double.class);
+
+        return handle.asType(type);
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new RuntimeException(e);
+    }
+
+    /**
+     * Checks if queries go directly to the server internals.
+     *
+     * @return True if the NMS handles were resolved, false if the Bukkit API fallback is used
+     */
+    public static boolean isUsingNMS() {
+        return UseNMS;
+    }
+
     public static BoundingBox getBoundingBox(Entity entity) {
-        AxisAlignedBB rawBB = ((CraftEntity) entity).getHandle().getBoundingBox();
-        return new BoundingBox(new Vector(rawBB.minX, rawBB.minY, rawBB.minZ), new Vector(rawBB.maxX, rawBB.maxY, rawBB.maxZ));
+        return getBoundingBox(entity, new BoundingBox(0, 0, 0, 0, 0, 0));
+    }
+
+    /**
+     * Gets the bounding box of an entity without allocating a new box
+     *
+     * @param entity The entity
+     * @param into   The box to write the result into
+     * @return The {@code into} box
+     */
+    public static BoundingBox getBoundingBox(Entity entity, BoundingBox into) {
+        if (!UseNMS) {
+            org.bukkit.util.BoundingBox raw = entity.getBoundingBox();
+            return into.set(raw.getMinX(), raw.getMinY(), raw.getMinZ(), raw.getMaxX(), raw.getMaxY(), raw.getMaxZ());
+        }
+
+        try {
+            Object handle = (Object) CraftEntity_GetHandle.invokeExact((Object) entity);
+            return readBounds(handle, into);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
     }
 
     public static List<Entity> getEntitiesWithin(World world, BoundingBox bb) {
         return getEntitiesWithin(world, bb, Entity.class);
     }
 
-    @SuppressWarnings("unchecked")
     public static <T extends Entity> List<T> getEntitiesWithin(World world, BoundingBox bb, Class<T> type) {
-        AxisAlignedBB rawBB = new AxisAlignedBB(bb.getMinCorner().getX(), bb.getMinCorner().getY(), bb.getMinCorner().getZ(), bb.getMaxCorner().getX(), bb.getMaxCorner().getY(), bb.getMaxCorner().getZ());
+        List<T> results = new ArrayList<>();
+        forEachEntityWithin(world, bb, type, results::add);
+        return results;
+    }
 
-        // Call List<? extends Entity> getEntities(Class<? extends Entity>, AxisAlignedBB, Predicate<? extends Entity>)
-        List<  net.minecraft.server.v1_16_R2.Entity> rawResults = ((CraftWorld) world).getHandle().a(  net.minecraft.server.v1_16_R2.Entity.class, rawBB, null);
+    public static List<? extends Entity> getEntitiesWithin(World world, BoundingBox bb, EntityType type) {
+        return getEntitiesWithin(world, bb, type.getEntityClass());
+    }
 
-        List<T> resolved = Lists.newArrayListWithCapacity(rawResults.size());
-        for (  net.minecraft.server.v1_16_R2.Entity rawResult : rawResults) {
-            Entity bukkitEntity = rawResult.getBukkitEntity();
-            if (type.isInstance(bukkitEntity)) {
-                resolved.add((T) bukkitEntity);
-            }
+    /**
+     * Visits every entity of a type within a bounding box.
+     * No intermediate lists are built, each match is handed straight to the visitor.
+     * The visitor must not add or remove entities from the world.
+     *
+     * @param world   The world to search
+     * @param bb      The area to search
+     * @param type    The type of entity to visit
+     * @param visitor Receives each matching entity
+     * @param <T>     The entity type
+     */
+    public static <T extends Entity> void forEachEntityWithin(World world, BoundingBox bb, Class<T> type, Consumer<? super T> visitor) {
+        forEachCandidate(world, bb, null, type, visitor);
+    }
+
+    /**
+     * Gets all entities of a type that touch a sphere
+     *
+     * @param world  The world to search
+     * @param x      The centre of the sphere
+     * @param y      The centre of the sphere
+     * @param z      The centre of the sphere
+     * @param radius The radius of the sphere
+     * @param type   The type of entity to find
+     * @param <T>    The entity type
+     * @return A list of matching entities in no particular order
+     */
+    public static <T extends Entity> List<T> getEntitiesInSphere(World world, double x, double y, double z, double radius, Class<T> type) {
+        List<T> results = new ArrayList<>();
+        forEachEntityInSphere(world, x, y, z, radius, type, results::add);
+        return results;
+    }
+
+    /**
+     * Visits every entity of a type whose bounding box touches a sphere.
+     * Candidates are rejected on their raw bounds before being converted to Bukkit entities.
+     *
+     * @param world   The world to search
+     * @param x       The centre of the sphere
+     * @param y       The centre of the sphere
+     * @param z       The centre of the sphere
+     * @param radius  The radius of the sphere
+     * @param type    The type of entity to visit
+     * @param visitor Receives each matching entity
+     * @param <T>     The entity type
+     */
+    public static <T extends Entity> void forEachEntityInSphere(World world, double x, double y, double z, double radius, Class<T> type, Consumer<? super T> visitor) {
+        final double radiusSq = radius * radius;
+        BoundingBox area = new BoundingBox(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+
+        forEachCandidate(world, area, bounds -> distanceSquared(bounds, x, y, z) <= radiusSq, type, visitor);
+    }
+
+    /**
+     * Finds the nearest entities of a type to a point.
+     * Once {@code count} entities have been found, the search radius shrinks to the
+     * furthest of them so later candidates are rejected without further work.
+     *
+     * @param world     The world to search
+     * @param x         The point to search from
+     * @param y         The point to search from
+     * @param z         The point to search from
+     * @param maxRadius The maximum distance to search
+     * @param count     The maximum number of entities to return
+     * @param type      The type of entity to find
+     * @param <T>       The entity type
+     * @return Up to {@code count} entities, nearest first
+     */
+    public static <T extends Entity> List<T> getNearestEntities(World world, double x, double y, double z, double maxRadius, int count, Class<T> type) {
+        if (count <= 0)
+            return new ArrayList<>();
+
+        BoundingBox area = new BoundingBox(x - maxRadius, y - maxRadius, z - maxRadius, x + maxRadius, y + maxRadius, z + maxRadius);
+        NearestCollector<T> collector = new NearestCollector<>(x, y, z, maxRadius * maxRadius, count);
+
+        forEachCandidate(world, area, collector, type, collector);
+        return collector.getResults();
+    }
+
+    /**
+     * Gets all entities of a type inside a cone
+     *
+     * @param apex      The tip of the cone
+     * @param direction The direction the cone opens in
+     * @param range     The length of the cone
+     * @param angle     The half angle of the cone in degrees
+     * @param type      The type of entity to find
+     * @param <T>       The entity type
+     * @return A list of matching entities in no particular order
+     */
+    public static <T extends Entity> List<T> getEntitiesInCone(Location apex, Vector direction, double range, double angle, Class<T> type) {
+        List<T> results = new ArrayList<>();
+        forEachEntityInCone(apex, direction, range, angle, type, results::add);
+        return results;
+    }
+
+    /**
+     * Visits every entity of a type whose bounding box centre is inside a cone.
+     * The cone is capped by a sphere of {@code range} around the apex.
+     *
+     * @param apex      The tip of the cone
+     * @param direction The direction the cone opens in
+     * @param range     The length of the cone
+     * @param angle     The half angle of the cone in degrees, up to 180
+     * @param type      The type of entity to visit
+     * @param visitor   Receives each matching entity
+     * @param <T>       The entity type
+     */
+    public static <T extends Entity> void forEachEntityInCone(Location apex, Vector direction, double range, double angle, Class<T> type, Consumer<? super T> visitor) {
+        Validate.isTrue(angle >= 0 && angle <= 180, "Angle must be between 0 and 180");
+
+        final double length = direction.length();
+        Validate.isTrue(length > 0, "Direction cannot be zero");
+
+        final double apexX = apex.getX();
+        final double apexY = apex.getY();
+        final double apexZ = apex.getZ();
+        final double dirX = direction.getX() / length;
+        final double dirY = direction.getY() / length;
+        final double dirZ = direction.getZ() / length;
+        final double rangeSq = range * range;
+        final double halfAngle = Math.toRadians(angle);
+        final double cos = Math.cos(halfAngle);
+        final double cosSq = cos * cos;
+
+        // Bound the cone by the furthest its cap reaches along each axis
+        BoundingBox area = new BoundingBox(apexX, apexY, apexZ, apexX, apexY, apexZ);
+        area.include(apexX + coneExtent(dirX, halfAngle, range), apexY + coneExtent(dirY, halfAngle, range), apexZ + coneExtent(dirZ, halfAngle, range));
+        area.include(apexX - coneExtent(-dirX, halfAngle, range), apexY - coneExtent(-dirY, halfAngle, range), apexZ - coneExtent(-dirZ, halfAngle, range));
+
+        forEachCandidate(apex.getWorld(), area, bounds -> {
+            double vx = (bounds.getMinX() + bounds.getMaxX()) * 0.5 - apexX;
+            double vy = (bounds.getMinY() + bounds.getMaxY()) * 0.5 - apexY;
+            double vz = (bounds.getMinZ() + bounds.getMaxZ()) * 0.5 - apexZ;
+
+            double distSq = vx * vx + vy * vy + vz * vz;
+            if (distSq > rangeSq)
+                return false;
+            if (distSq == 0)
+                return true;
+
+            double dot = vx * dirX + vy * dirY + vz * dirZ;
+            // Compare cosines without the square root: dot / |v| >= cos
+            if (cos >= 0)
+                return dot >= 0 && dot * dot >= cosSq * distSq;
+            else
+                return dot >= 0 || dot * dot <= cosSq * distSq;
+        }, type, visitor);
+    }
+
+    /**
+     * Gets all entities of a type inside a view frustum
+     *
+     * @param eye           The eye of the viewer. The pitch and yaw give the view direction
+     * @param horizontalFov The full horizontal field of view in degrees
+     * @param verticalFov   The full vertical field of view in degrees
+     * @param near          The distance to the near plane
+     * @param far           The distance to the far plane
+     * @param type          The type of entity to find
+     * @param <T>           The entity type
+     * @return A list of matching entities in no particular order
+     */
+    public static <T extends Entity> List<T> getEntitiesInFrustum(Location eye, double horizontalFov, double verticalFov, double near, double far, Class<T> type) {
+        List<T> results = new ArrayList<>();
+        forEachEntityInFrustum(eye, horizontalFov, verticalFov, near, far, type, results::add);
+        return results;
+    }
+
+    /**
+     * Visits every entity of a type whose bounding box centre is inside a view frustum.
+     *
+     * @param eye           The eye of the viewer. The pitch and yaw give the view direction
+     * @param horizontalFov The full horizontal field of view in degrees, below 180
+     * @param verticalFov   The full vertical field of view in degrees, below 180
+     * @param near          The distance to the near plane
+     * @param far           The distance to the far plane
+     * @param type          The type of entity to visit
+     * @param visitor       Receives each matching entity
+     * @param <T>           The entity type
+     */
+    public static <T extends Entity> void forEachEntityInFrustum(Location eye, double horizontalFov, double verticalFov, double near, double far, Class<T> type, Consumer<? super T> visitor) {
+        Validate.isTrue(horizontalFov > 0 && horizontalFov < 180, "Horizontal FOV must be between 0 and 180");
+        Validate.isTrue(verticalFov > 0 && verticalFov < 180, "Vertical FOV must be between 0 and 180");
+        Validate.isTrue(near >= 0 && far > near, "Near must be positive and less than far");
+
+        final double eyeX = eye.getX();
+        final double eyeY = eye.getY();
+        final double eyeZ = eye.getZ();
+
+        // Forward from the pitch and yaw, same as Location#getDirection
+        double yaw = Math.toRadians(eye.getYaw());
+        double pitch = Math.toRadians(eye.getPitch());
+        double xz = Math.cos(pitch);
+        final double fX = -xz * Math.sin(yaw);
+        final double fY = -Math.sin(pitch);
+        final double fZ = xz * Math.cos(yaw);
+
+        // Right is always horizontal, so it can come from the yaw alone
+        final double rX = -Math.cos(yaw);
+        final double rY = 0;
+        final double rZ = -Math.sin(yaw);
+
+        // Up = right x forward
+        final double uX = rY * fZ - rZ * fY;
+        final double uY = rZ * fX - rX * fZ;
+        final double uZ = rX * fY - rY * fX;
+
+        final double tanH = Math.tan(Math.toRadians(horizontalFov) / 2);
+        final double tanV = Math.tan(Math.toRadians(verticalFov) / 2);
+
+        // Bound the frustum by its 8 corners
+        BoundingBox area = new BoundingBox(eyeX, eyeY, eyeZ, eyeX, eyeY, eyeZ);
+        for (int i = 0; i < 8; ++i) {
+            double depth = (i & 1) == 0 ? near : far;
+            double side = ((i & 2) == 0 ? -1 : 1) * depth * tanH;
+            double height = ((i & 4) == 0 ? -1 : 1) * depth * tanV;
+            area.include(
+                    eyeX + fX * depth + rX * side + uX * height,
+                    eyeY + fY * depth + rY * side + uY * height,
+                    eyeZ + fZ * depth + rZ * side + uZ * height
+            );
         }
 
-        return resolved;
+        forEachCandidate(eye.getWorld(), area, bounds -> {
+            double vx = (bounds.getMinX() + bounds.getMaxX()) * 0.5 - eyeX;
+            double vy = (bounds.getMinY() + bounds.getMaxY()) * 0.5 - eyeY;
+            double vz = (bounds.getMinZ() + bounds.getMaxZ()) * 0.5 - eyeZ;
+
+            double depth = vx * fX + vy * fY + vz * fZ;
+            if (depth < near || depth > far)
+                return false;
+
+            double side = vx * rX + vy * rY + vz * rZ;
+            if (Math.abs(side) > depth * tanH)
+                return false;
+
+            double height = vx * uX + vy * uY + vz * uZ;
+            return Math.abs(height) <= depth * tanV;
+        }, type, visitor);
     }
 
-    public static List<? extends Entity> getEntitiesWithin(World world, BoundingBox bb, EntityType type) {
-        return getEntitiesWithin(world, bb, type.getEntityClass());
+    /**
+     * Gets the squared distance from a point to the closest point of a box
+     *
+     * @param bounds The box
+     * @param x      The point
+     * @param y      The point
+     * @param z      The point
+     * @return The squared distance, 0 if the point is inside
+     */
+    public static double distanceSquared(BoundingBox bounds, double x, double y, double z) {
+        double dx = Math.max(0, Math.max(bounds.getMinX() - x, x - bounds.getMaxX()));
+        double dy = Math.max(0, Math.max(bounds.getMinY() - y, y - bounds.getMaxY()));
+        double dz = Math.max(0, Math.max(bounds.getMinZ() - z, z - bounds.getMaxZ()));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // How far a cone's cap reaches along an axis, given the axis component of the cone direction
+    private static double coneExtent(double axisComponent, double halfAngle, double range) {
+        double axisAngle = Math.acos(Math.max(-1, Math.min(1, axisComponent)));
+        return Math.max(0, range * Math.cos(Math.max(0, axisAngle - halfAngle)));
+    }
+
+    /**
+     * Walks the entities touching an area. Each candidate's bounds are checked by
+     * the shape before it is converted to a Bukkit entity and checked against the type.
+     */
+    private static <T extends Entity> void forEachCandidate(World world, BoundingBox area, Shape shape, Class<T> type, Consumer<? super T> visitor) {
+        final BoundingBox bounds = new BoundingBox(0, 0, 0, 0, 0, 0);
+
+        if (!UseNMS) {
+            org.bukkit.util.BoundingBox rawBB = new org.bukkit.util.BoundingBox(area.getMinX(), area.getMinY(), area.getMinZ(), area.getMaxX(), area.getMaxY(), area.getMaxZ());
+            world.getNearbyEntities(rawBB, entity -> {
+                if (shape != null && !shape.test(getBoundingBox(entity, bounds)))
+                    return false;
+                if (type.isInstance(entity))
+                    visitor.accept(type.cast(entity));
+                return false;
+            });
+            return;
+        }
+
+        // Matches are handed out from inside the predicate and rejected, so the server never fills a result list
+        Predicate<Object> filter = rawEntity -> {
+            if (shape != null && !shape.test(readBounds(rawEntity, bounds)))
+                return false;
+
+            Entity entity = toBukkit(rawEntity);
+            if (type.isInstance(entity))
+                visitor.accept(type.cast(entity));
+            return false;
+        };
+
+        try {
+            Object handle = (Object) CraftWorld_GetHandle.invokeExact((Object) world);
+            Object rawBB = (Object) AABB_New.invokeExact(area.getMinX(), area.getMinY(), area.getMinZ(), area.getMaxX(), area.getMaxY(), area.getMaxZ());
+            Object ignored = (Object) NMSWorld_GetEntities.invokeExact(handle, (Object) NMSEntityClass, rawBB, (Object) filter);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static BoundingBox readBounds(Object rawEntity, BoundingBox into) {
+        try {
+            Object rawBB = (Object) NMSEntity_GetBoundingBox.invokeExact(rawEntity);
+            return into.set(
+                    (double) AABB_MinX.invokeExact(rawBB),
+                    (double) AABB_MinY.invokeExact(rawBB),
+                    (double) AABB_MinZ.invokeExact(rawBB),
+                    (double) AABB_MaxX.invokeExact(rawBB),
+                    (double) AABB_MaxY.invokeExact(rawBB),
+                    (double) AABB_MaxZ.invokeExact(rawBB)
+            );
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static Entity toBukkit(Object rawEntity) {
+        try {
+            Object entity = (Object) NMSEntity_GetBukkitEntity.invokeExact(rawEntity);
+            return (Entity) entity;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private interface Shape {
+        boolean test(BoundingBox bounds);
+    }
+
+    /**
+     * Keeps the nearest entities found so far, sorted by distance.
+     * The shape test records the candidate's distance for the following accept call.
+     */
+    private static class NearestCollector<T extends Entity> implements Shape, Consumer<T> {
+        private final double mX;
+        private final double mY;
+        private final double mZ;
+        private final double[] mDistances;
+        private final Object[] mEntities;
+        private double mLimitSq;
+        private double mCandidateSq;
+        private int mSize;
+
+        NearestCollector(double x, double y, double z, double limitSq, int count) {
+            mX = x;
+            mY = y;
+            mZ = z;
+            mLimitSq = limitSq;
+            mDistances = new double[count];
+            mEntities = new Object[count];
+        }
+
+        @Override
+        public boolean test(BoundingBox bounds) {
+            mCandidateSq = distanceSquared(bounds, mX, mY, mZ);
+            return mCandidateSq <= mLimitSq;
+        }
+
+        @Override
+        public void accept(T entity) {
+            // Insertion sort, dropping the furthest when full
+            int pos = mSize < mDistances.length ? mSize++ : mSize - 1;
+            while (pos > 0 && mDistances[pos - 1] > mCandidateSq) {
+                mDistances[pos] = mDistances[pos - 1];
+                mEntities[pos] = mEntities[pos - 1];
+                --pos;
+            }
+            mDistances[pos] = mCandidateSq;
+            mEntities[pos] = entity;
+
+            // When full, nothing further than the last entry can get in
+            if (mSize == mDistances.length)
+                mLimitSq = mDistances[mSize - 1];
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> getResults() {
+            List<T> results = new ArrayList<>(mSize);
+            for (int i = 0; i < mSize; ++i)
+                results.add((T) mEntities[i]);
+            return results;
+        }
     }
 }
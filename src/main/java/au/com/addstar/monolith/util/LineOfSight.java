@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.util;
+
+import au.com.addstar.monolith.BoundingBox;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * Answers "can A see B" questions using {@link Raytrace}, remembering each answer
+ * for the rest of the tick.
+ * <br>
+ * Entity pairs are keyed by their entity ids, and location pairs by the blocks they
+ * are in, so every location within the same two blocks shares one answer. A cached
+ * answer is dropped if a block along its ray changes during the tick.
+ * <br>
+ * This must only be used from the server thread.
+ */
+@SuppressWarnings("deprecation")
+public class LineOfSight implements Listener {
+    private static final int SectionSize = 16;
+
+    private final Plugin plugin;
+    private final Raytrace raytrace;
+
+    private final HashMap<Long, Entry> entityCache;
+    private final HashMap<RayKey, Entry> blockCache;
+    // Cached entries by the 16x16x16 sections their rays pass through
+    private final HashMap<Long, List<Entry>> sectionIndex;
+    private final BoundingBox blockBounds;
+
+    private BukkitTask task;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    public LineOfSight(Plugin plugin) {
+        this.plugin = plugin;
+
+        raytrace = new Raytrace().ignoreAllEntities();
+        entityCache = new HashMap<>();
+        blockCache = new HashMap<>();
+        sectionIndex = new HashMap<>();
+        blockBounds = new BoundingBox(0, 0, 0, 1, 1, 1);
+    }
+
+    /**
+     * Starts clearing the cache each tick, and listening for block changes
+     */
+    public void launchTickTask() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::clear, 1, 1);
+    }
+
+    public void stopTickTask() {
+        HandlerList.unregisterAll(this);
+        if (task != null)
+            task.cancel();
+        task = null;
+        clear();
+    }
+
+    /**
+     * Checks if there are no blocks between the eyes of two entities.
+     * The result is shared by both orderings of the pair.
+     *
+     * @param viewer The entity looking
+     * @param target The entity being looked at
+     * @return True if nothing blocks the view
+     */
+    public boolean canSee(Entity viewer, Entity target) {
+        if (viewer.getWorld() != target.getWorld())
+            return false;
+
+        int low = Math.min(viewer.getEntityId(), target.getEntityId());
+        int high = Math.max(viewer.getEntityId(), target.getEntityId());
+        Long key = ((long) low << 32) | (high & 0xFFFFFFFFL);
+
+        Entry entry = entityCache.get(key);
+        if (entry != null) {
+            ++hits;
+            return entry.visible;
+        }
+
+        ++misses;
+        entry = trace(key, getEyeLocation(viewer), getEyeLocation(target));
+        entityCache.put(key, entry);
+        return entry.visible;
+    }
+
+    /**
+     * Checks if there are no blocks between two locations.
+     * Locations in the same two blocks share a result for the rest of the tick.
+     *
+     * @param from The start of the line
+     * @param to   The end of the line
+     * @return True if nothing blocks the line
+     */
+    public boolean canSee(Location from, Location to) {
+        if (from.getWorld() != to.getWorld())
+            return false;
+
+        RayKey key = new RayKey(from.getWorld(), packBlock(from.getBlockX(), from.getBlockY(), from.getBlockZ()), packBlock(to.getBlockX(), to.getBlockY(), to.getBlockZ()));
+
+        Entry entry = blockCache.get(key);
+        if (entry != null) {
+            ++hits;
+            return entry.visible;
+        }
+
+        ++misses;
+        entry = trace(key, from, to);
+        blockCache.put(key, entry);
+        return entry.visible;
+    }
+
+    /**
+     * Drops everything cached so far
+     */
+    public void clear() {
+        entityCache.clear();
+        blockCache.clear();
+        sectionIndex.clear();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the fraction of checks that were answered from the cache
+     *
+     * @return A value between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        if (total == 0)
+            return 0;
+        return (double) hits / total;
+    }
+
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        invalidations = 0;
+    }
+
+    private Entry trace(Object key, Location from, Location to) {
+        Entry entry = new Entry(key, from, to);
+        entry.visible = raytrace.traceOnce(from, to) == null;
+
+        forEachSection(entry.startX, entry.startY, entry.startZ, entry.endX, entry.endY, entry.endZ, section -> {
+            List<Entry> entries = sectionIndex.get(section);
+            if (entries == null) {
+                entries = new ArrayList<>(2);
+                sectionIndex.put(section, entries);
+            }
+            entries.add(entry);
+        });
+
+        return entry;
+    }
+
+    private static Location getEyeLocation(Entity entity) {
+        if (entity instanceof LivingEntity)
+            return ((LivingEntity) entity).getEyeLocation();
+        return entity.getLocation();
+    }
+
+    private void invalidate(Block block) {
+        List<Entry> entries = sectionIndex.get(packSection(block.getX() >> 4, block.getY() >> 4, block.getZ() >> 4));
+        if (entries == null)
+            return;
+
+        blockBounds.set(block.getX(), block.getY(), block.getZ(), block.getX() + 1, block.getY() + 1, block.getZ() + 1);
+        for (Entry entry : entries) {
+            if (!entry.valid || entry.world != block.getWorld())
+                continue;
+
+            // Only drop rays that actually pass through the block
+            if (blockBounds.getIntersectionDistance(entry.startX, entry.startY, entry.startZ,
+                    entry.endX - entry.startX, entry.endY - entry.startY, entry.endZ - entry.startZ, 1) < 0)
+                continue;
+
+            entry.valid = false;
+            if (entry.key instanceof RayKey)
+                blockCache.remove(entry.key);
+            else
+                entityCache.remove(entry.key);
+            ++invalidations;
+        }
+    }
+
+    private void invalidate(List<Block> blocks) {
+        for (Block block : blocks)
+            invalidate(block);
+    }
+
+    // Walks the sections a line passes through (Amanatides & Woo)
+    private static void forEachSection(double startX, double startY, double startZ, double endX, double endY, double endZ, LongConsumer action) {
+        int x = (int) Math.floor(startX / SectionSize);
+        int y = (int) Math.floor(startY / SectionSize);
+        int z = (int) Math.floor(startZ / SectionSize);
+        int lastX = (int) Math.floor(endX / SectionSize);
+        int lastY = (int) Math.floor(endY / SectionSize);
+        int lastZ = (int) Math.floor(endZ / SectionSize);
+
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double dz = endZ - startZ;
+
+        int stepX = Integer.signum(lastX - x);
+        int stepY = Integer.signum(lastY - y);
+        int stepZ = Integer.signum(lastZ - z);
+
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : SectionSize / Math.abs(dx);
+        double deltaY = stepY == 0 ? Double.POSITIVE_INFINITY : SectionSize / Math.abs(dy);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : SectionSize / Math.abs(dz);
+
+        double maxX = stepX == 0 ? Double.POSITIVE_INFINITY : ((stepX > 0 ? x + 1 : x) * SectionSize - startX) / dx;
+        double maxY = stepY == 0 ? Double.POSITIVE_INFINITY : ((stepY > 0 ? y + 1 : y) * SectionSize - startY) / dy;
+        double maxZ = stepZ == 0 ? Double.POSITIVE_INFINITY : ((stepZ > 0 ? z + 1 : z) * SectionSize - startZ) / dz;
+
+        int steps = Math.abs(lastX - x) + Math.abs(lastY - y) + Math.abs(lastZ - z);
+        action.accept(packSection(x, y, z));
+        for (int i = 0; i < steps; ++i) {
+            if (maxX < maxY && maxX < maxZ) {
+                x += stepX;
+                maxX += deltaX;
+            } else if (maxY < maxZ) {
+                y += stepY;
+                maxY += deltaY;
+            } else {
+                z += stepZ;
+                maxZ += deltaZ;
+            }
+            action.accept(packSection(x, y, z));
+        }
+    }
+
+    private static long packSection(int x, int y, int z) {
+        return ((long) x & 0x3FFFFF) << 42 | ((long) z & 0x3FFFFF) << 20 | (y & 0xFFFFF);
+    }
+
+    private static long packBlock(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockBreak(BlockBreakEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockPlace(BlockPlaceEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockBurn(BlockBurnEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockFade(BlockFadeEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockForm(BlockFormEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockGrow(BlockGrowEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockFromTo(BlockFromToEvent event) {
+        invalidate(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onPistonExtend(BlockPistonExtendEvent event) {
+        invalidate(event.getBlocks());
+        for (Block block : event.getBlocks())
+            invalidate(block.getRelative(event.getDirection()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onPistonRetract(BlockPistonRetractEvent event) {
+        invalidate(event.getBlocks());
+        for (Block block : event.getBlocks())
+            invalidate(block.getRelative(event.getDirection()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onBlockExplode(BlockExplodeEvent event) {
+        invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onEntityExplode(EntityExplodeEvent event) {
+        invalidate(event.blockList());
+    }
+
+    private static class Entry {
+        final Object key;
+        final World world;
+        final double startX;
+        final double startY;
+        final double startZ;
+        final double endX;
+        final double endY;
+        final double endZ;
+        boolean visible;
+        boolean valid;
+
+        Entry(Object key, Location from, Location to) {
+            this.key = key;
+            world = from.getWorld();
+            startX = from.getX();
+            startY = from.getY();
+            startZ = from.getZ();
+            endX = to.getX();
+            endY = to.getY();
+            endZ = to.getZ();
+            valid = true;
+        }
+    }
+
+    private static class RayKey {
+        private final World world;
+        private final long from;
+        private final long to;
+
+        RayKey(World world, long from, long to) {
+            this.world = world;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RayKey))
+                return false;
+
+            RayKey other = (RayKey) obj;
+            return from == other.from && to == other.to && world == other.world;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(world, from, to);
+        }
+    }
+}
@@ -24,7 +24,9 @@ package au.com.addstar.monolith.util;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import org.bukkit.Material;
 import org.bukkit.entity.EntityType;
@@ -40,6 +42,26 @@ import au.com.addstar.monolith.lookup.Lookup;
  * A utility class for parsing many different values from strings
  */
 public class Parser {
+    // Enum constants by lowercase name, with and without underscores
+    private static final ClassValue<Map<String, Enum<?>>> EnumNames = new ClassValue<Map<String, Enum<?>>>() {
+        @Override
+        protected Map<String, Enum<?>> computeValue(Class<?> type) {
+            Map<String, Enum<?>> names = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                Enum<?> value = (Enum<?>) constant;
+                names.put(value.name().toLowerCase(Locale.ROOT), value);
+            }
+
+            // Exact names take priority
+            for (Object constant : type.getEnumConstants()) {
+                Enum<?> value = (Enum<?>) constant;
+                if (value.name().contains("_"))
+                    names.putIfAbsent(value.name().replace("_", "").toLowerCase(Locale.ROOT), value);
+            }
+            return names;
+        }
+    };
+
     /**
      * Parses longs from the provided string. Accepts octal and hex if the appropriate prefix is found (0 for octal, 0x for hex)
      *
@@ -72,13 +94,24 @@ public class Parser {
             return Boolean.TRUE;
         else if (value.equalsIgnoreCase("false"))
             return Boolean.FALSE;
-        else {
-            if (value.matches("[0-9]+"))
-                return Integer.parseInt(value) != 0;
-        }
+        else if (isDigits(value))
+            return Integer.parseInt(value) != 0;
+
         throw new IllegalArgumentException("Expected true, false, 1, or 0");
     }
 
+    private static boolean isDigits(String value) {
+        if (value.isEmpty())
+            return false;
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Parses enums from a string. Parsing is case insensitive and will try with and without underscores
      *
@@ -89,15 +122,9 @@ public class Parser {
      * @throws IllegalArgumentException Thrown if the value cannot be parsed as one of the enum class
      */
     public static <T extends Enum<T>> T parseEnum(Class<T> type, String value) throws IllegalArgumentException {
-        EnumSet<T> set = EnumSet.allOf(type);
-        for (T e : set) {
-            if (e.name().equalsIgnoreCase(value))
-                return e;
-            if (e.name().contains("_")) {
-                if (e.name().replace("_", "").equalsIgnoreCase(value))
-                    return e;
-            }
-        }
+        Enum<?> result = EnumNames.get(type).get(value.toLowerCase(Locale.ROOT));
+        if (result != null)
+            return type.cast(result);
 
         throw new IllegalArgumentException("Unknown value " + value + " in enum " + type.getName());
     }
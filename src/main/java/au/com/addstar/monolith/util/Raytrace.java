@@ -238,10 +238,7 @@ public class Raytrace {
     }
 
     public Hit traceOnce(Location start, Location end) {
-        Validate.isTrue(start.getWorld() == end.getWorld(), "Unable to raytrace across worlds");
-        Vector direction = end.toVector().subtract(start.toVector());
-
-        List<Hit> hits = traceSome(start, direction, direction.length(), 1);
+        List<Hit> hits = traceSome(start, end, 1);
         if (hits.isEmpty())
             return null;
 
@@ -249,17 +246,18 @@ public class Raytrace {
     }
 
     public List<Hit> traceAll(Location start, Location end) {
-        Validate.isTrue(start.getWorld() == end.getWorld(), "Unable to raytrace across worlds");
-        Vector direction = end.toVector().subtract(start.toVector());
-
-        return traceSome(start, direction, direction.length(), Integer.MAX_VALUE);
+        return traceSome(start, end, Integer.MAX_VALUE);
     }
 
     public List<Hit> traceSome(Location start, Location end, int maxHits) {
         Validate.isTrue(start.getWorld() == end.getWorld(), "Unable to raytrace across worlds");
         Vector direction = end.toVector().subtract(start.toVector());
+        double distance = direction.length();
+        if (distance == 0)
+            return Collections.emptyList();
 
-        return traceSome(start, direction, direction.length(), maxHits);
+        // The direction must be a unit vector so the ray ends exactly at end
+        return traceSome(start, direction.multiply(1 / distance), distance, maxHits);
     }
 
     public List<Hit> traceSome(Location start, Vector direction, double maxDistance, int maxHits) {
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.virtual;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.craftbukkit.v1_16_R2.entity.CraftPlayer;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.mojang.datafixers.util.Pair;
+
+import   net.minecraft.server.v1_16_R2.EntityLiving;
+import   net.minecraft.server.v1_16_R2.EnumItemSlot;
+import   net.minecraft.server.v1_16_R2.ItemStack;
+import   net.minecraft.server.v1_16_R2.Packet;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutEntityEquipment;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutEntityHeadRotation;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutEntityMetadata;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutEntityTeleport;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutSpawnEntity;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutSpawnEntityLiving;
+
+/**
+ * An entity that only exists on the clients of nearby players.
+ * It is never added to a world, so it does not tick, collide or get saved.
+ * <br>
+ * The entity can be configured through {@link #getEntity()} like a normal entity,
+ * after which {@link #update()} must be called to show the changes.
+ */
+public class VirtualEntity {
+    private final VirtualEntityManager mManager;
+    private final net.minecraft.server.v1_16_R2.Entity mHandle;
+    private final Set<Player> mViewers = Sets.newHashSet();
+    private Location mLocation;
+    private boolean mRemoved;
+
+    VirtualEntity(VirtualEntityManager manager, net.minecraft.server.v1_16_R2.Entity handle, Location location) {
+        mManager = manager;
+        mHandle = handle;
+        mLocation = location.clone();
+    }
+
+    /**
+     * Gets the id the clients know this entity by
+     *
+     * @return The entity id
+     */
+    public int getEntityId() {
+        return mHandle.getId();
+    }
+
+    /**
+     * Gets the Bukkit view of this entity, for reading or changing its settings.
+     * The entity is not in any world, so methods that rely on one will not work.
+     *
+     * @return The entity
+     */
+    public Entity getEntity() {
+        return mHandle.getBukkitEntity();
+    }
+
+    public Location getLocation() {
+        return mLocation.clone();
+    }
+
+    /**
+     * Gets the players that can currently see this entity
+     *
+     * @return An unmodifiable view of the viewers
+     */
+    public Collection<Player> getViewers() {
+        return Collections.unmodifiableSet(mViewers);
+    }
+
+    public boolean isRemoved() {
+        return mRemoved;
+    }
+
+    /**
+     * Moves this entity within its world
+     *
+     * @param location The new location
+     */
+    public void teleport(Location location) {
+        Validate.isTrue(!mRemoved, "This entity has been removed");
+        Validate.isTrue(location.getWorld() == mLocation.getWorld(), "Virtual entities cannot change worlds");
+
+        Location old = mLocation;
+        mLocation = location.clone();
+        mHandle.setLocation(location.getX(), location.getY(), location.getZ(), location.getYaw(), location.getPitch());
+
+        PacketPlayOutEntityTeleport packet = new PacketPlayOutEntityTeleport(mHandle);
+        for (Player player : mViewers)
+            send(player, packet);
+
+        mManager.onMoved(this, old);
+    }
+
+    /**
+     * Sends any changes made through {@link #getEntity()} to the viewers
+     */
+    public void update() {
+        Validate.isTrue(!mRemoved, "This entity has been removed");
+
+        List<Packet<?>> packets = getStatePackets();
+        for (Player player : mViewers) {
+            for (Packet<?> packet : packets)
+                send(player, packet);
+        }
+    }
+
+    /**
+     * Removes this entity from every viewer and from the manager
+     */
+    public void remove() {
+        if (!mRemoved)
+            mManager.remove(this);
+    }
+
+    void markRemoved() {
+        mRemoved = true;
+        mViewers.clear();
+    }
+
+    Set<Player> viewers() {
+        return mViewers;
+    }
+
+    void show(Player player) {
+        if (!mViewers.add(player))
+            return;
+
+        if (mHandle instanceof EntityLiving)
+            send(player, new PacketPlayOutSpawnEntityLiving((EntityLiving) mHandle));
+        else
+            send(player, new PacketPlayOutSpawnEntity(mHandle));
+
+        for (Packet<?> packet : getStatePackets())
+            send(player, packet);
+    }
+
+    private List<Packet<?>> getStatePackets() {
+        List<Packet<?>> packets = Lists.newArrayListWithCapacity(3);
+        packets.add(new PacketPlayOutEntityMetadata(mHandle.getId(), mHandle.getDataWatcher(), true));
+
+        if (mHandle instanceof EntityLiving) {
+            EntityLiving living = (EntityLiving) mHandle;
+            // Every slot is sent, so viewers also see slots that were emptied
+            List<Pair<EnumItemSlot, ItemStack>> equipment = Lists.newArrayList();
+            for (EnumItemSlot slot : EnumItemSlot.values()) {
+                ItemStack item = living.getEquipment(slot);
+                equipment.add(Pair.of(slot, item.isEmpty() ? ItemStack.b : item.cloneItemStack()));
+            }
+
+            packets.add(new PacketPlayOutEntityEquipment(mHandle.getId(), equipment));
+
+            packets.add(new PacketPlayOutEntityHeadRotation(mHandle, (byte) (mLocation.getYaw() * 256 / 360)));
+        }
+
+        return packets;
+    }
+
+    static void send(Player player, Packet<?> packet) {
+        ((CraftPlayer) player).getHandle().playerConnection.sendPacket(packet);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.virtual;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.craftbukkit.v1_16_R2.CraftWorld;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Painting;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import au.com.addstar.monolith.lookup.EntityDefinition;
+import au.com.addstar.monolith.template.EntityTemplate;
+import   net.minecraft.server.v1_16_R2.PacketPlayOutEntityDestroy;
+
+/**
+ * Keeps track of {@link VirtualEntity virtual entities} and which players can see them.
+ * <br>
+ * Entities are indexed by chunk. A player's visible set is only recalculated
+ * when they move into another chunk or entities are added, moved across chunks,
+ * or removed.
+ */
+public class VirtualEntityManager implements Listener {
+    private static final int UpdateInterval = 5;
+
+    private final Plugin plugin;
+
+    // World UUID to chunk key to the entities in that chunk
+    private final Map<UUID, Map<Long, List<VirtualEntity>>> chunks;
+    private final Map<UUID, Viewer> viewers;
+    private final Set<VirtualEntity> entities;
+
+    private int viewDistance;
+    private boolean dirty;
+    private BukkitTask task;
+
+    public VirtualEntityManager(Plugin plugin) {
+        this.plugin = plugin;
+
+        chunks = Maps.newHashMap();
+        viewers = Maps.newHashMap();
+        entities = Sets.newHashSet();
+        viewDistance = Bukkit.getViewDistance();
+    }
+
+    /**
+     * Starts updating viewers and listening for players changing worlds
+     */
+    public void launchTickTask() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::updateViewers, UpdateInterval, UpdateInterval);
+    }
+
+    public void stopTickTask() {
+        HandlerList.unregisterAll(this);
+        if (task != null)
+            task.cancel();
+        task = null;
+
+        for (VirtualEntity entity : Lists.newArrayList(entities))
+            remove(entity);
+        viewers.clear();
+    }
+
+    /**
+     * Sets how far away, in chunks, players can see virtual entities.
+     * Defaults to the server view distance.
+     *
+     * @param distance The distance in chunks
+     */
+    public void setViewDistance(int distance) {
+        Validate.isTrue(distance > 0, "View distance must be at least 1");
+        viewDistance = distance;
+        dirty = true;
+    }
+
+    public int getViewDistance() {
+        return viewDistance;
+    }
+
+    /**
+     * Creates a virtual entity configured by a template.
+     * Players, paintings and experience orbs are not supported.
+     *
+     * @param template The template to apply
+     * @param location The location of the entity
+     * @return The new entity
+     */
+    public VirtualEntity spawn(EntityTemplate template, Location location) {
+        EntityDefinition type = template.getType();
+        Class<? extends org.bukkit.entity.Entity> entityClass = type.getType().getEntityClass();
+        Validate.notNull(location.getWorld(), "Location must have a world");
+        Validate.isTrue(entityClass != null && !HumanEntity.class.isAssignableFrom(entityClass)
+                && !Painting.class.isAssignableFrom(entityClass) && !ExperienceOrb.class.isAssignableFrom(entityClass),
+                type + " cannot be a virtual entity");
+
+        // Created but never added to the world
+        net.minecraft.server.v1_16_R2.Entity handle = ((CraftWorld) location.getWorld()).createEntity(location, entityClass);
+        VirtualEntity entity = new VirtualEntity(this, handle, location);
+        template.applyTo(entity.getEntity());
+
+        entities.add(entity);
+        index(entity, location);
+        dirty = true;
+        return entity;
+    }
+
+    /**
+     * Removes a virtual entity from every viewer
+     *
+     * @param entity The entity to remove
+     */
+    public void remove(VirtualEntity entity) {
+        if (!entities.remove(entity))
+            return;
+
+        unindex(entity, entity.getLocation());
+
+        PacketPlayOutEntityDestroy packet = new PacketPlayOutEntityDestroy(entity.getEntityId());
+        for (Player player : entity.viewers()) {
+            VirtualEntity.send(player, packet);
+            Viewer viewer = viewers.get(player.getUniqueId());
+            if (viewer != null)
+                viewer.visible.remove(entity);
+        }
+
+        entity.markRemoved();
+    }
+
+    /**
+     * Gets all virtual entities
+     *
+     * @return An unmodifiable view of the entities
+     */
+    public Collection<VirtualEntity> getEntities() {
+        return Collections.unmodifiableSet(entities);
+    }
+
+    void onMoved(VirtualEntity entity, Location from) {
+        Location to = entity.getLocation();
+        if (chunkKey(from) == chunkKey(to))
+            return;
+
+        unindex(entity, from);
+        index(entity, to);
+        dirty = true;
+    }
+
+    private static long chunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static long chunkKey(Location location) {
+        return chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    private void index(VirtualEntity entity, Location location) {
+        chunks.computeIfAbsent(location.getWorld().getUID(), k -> Maps.newHashMap())
+                .computeIfAbsent(chunkKey(location), k -> Lists.newArrayListWithCapacity(2))
+                .add(entity);
+    }
+
+    private void unindex(VirtualEntity entity, Location location) {
+        Map<Long, List<VirtualEntity>> worldChunks = chunks.get(location.getWorld().getUID());
+        if (worldChunks == null)
+            return;
+
+        long key = chunkKey(location);
+        List<VirtualEntity> inChunk = worldChunks.get(key);
+        if (inChunk != null) {
+            inChunk.remove(entity);
+            if (inChunk.isEmpty())
+                worldChunks.remove(key);
+        }
+
+        if (worldChunks.isEmpty())
+            chunks.remove(location.getWorld().getUID());
+    }
+
+    private void updateViewers() {
+        boolean all = dirty;
+        dirty = false;
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Viewer viewer = viewers.computeIfAbsent(player.getUniqueId(), k -> new Viewer());
+            Location location = player.getLocation();
+            long key = chunkKey(location);
+
+            UUID world = location.getWorld().getUID();
+            if (!all && world.equals(viewer.world) && viewer.chunk == key)
+                continue;
+
+            viewer.world = world;
+            viewer.chunk = key;
+            updateViewer(player, viewer, location);
+        }
+    }
+
+    private void updateViewer(Player player, Viewer viewer, Location location) {
+        Set<VirtualEntity> inRange = Sets.newHashSet();
+        Map<Long, List<VirtualEntity>> worldChunks = chunks.get(location.getWorld().getUID());
+        if (worldChunks != null) {
+            int centerX = location.getBlockX() >> 4;
+            int centerZ = location.getBlockZ() >> 4;
+            for (int x = centerX - viewDistance; x <= centerX + viewDistance; ++x) {
+                for (int z = centerZ - viewDistance; z <= centerZ + viewDistance; ++z) {
+                    List<VirtualEntity> inChunk = worldChunks.get(chunkKey(x, z));
+                    if (inChunk != null)
+                        inRange.addAll(inChunk);
+                }
+            }
+        }
+
+        // Hide the ones that went out of range
+        int[] hidden = new int[viewer.visible.size()];
+        int hiddenCount = 0;
+        for (Iterator<VirtualEntity> it = viewer.visible.iterator(); it.hasNext(); ) {
+            VirtualEntity entity = it.next();
+            if (!inRange.contains(entity)) {
+                it.remove();
+                entity.viewers().remove(player);
+                hidden[hiddenCount++] = entity.getEntityId();
+            }
+        }
+
+        if (hiddenCount > 0) {
+            int[] ids = new int[hiddenCount];
+            System.arraycopy(hidden, 0, ids, 0, hiddenCount);
+            VirtualEntity.send(player, new PacketPlayOutEntityDestroy(ids));
+        }
+
+        // And show the new ones
+        for (VirtualEntity entity : inRange) {
+            if (viewer.visible.add(entity))
+                entity.show(player);
+        }
+    }
+
+    /**
+     * Forgets what a player can see, after their client has dropped every entity
+     */
+    private void resetViewer(Player player) {
+        Viewer viewer = viewers.remove(player.getUniqueId());
+        if (viewer == null)
+            return;
+
+        for (VirtualEntity entity : viewer.visible)
+            entity.viewers().remove(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPlayerQuit(PlayerQuitEvent event) {
+        resetViewer(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onChangeWorld(PlayerChangedWorldEvent event) {
+        resetViewer(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onRespawn(PlayerRespawnEvent event) {
+        resetViewer(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onWorldUnload(WorldUnloadEvent event) {
+        // Their handles refer to the world, so they cannot outlive it
+        for (VirtualEntity entity : Lists.newArrayList(entities)) {
+            if (entity.getLocation().getWorld() == event.getWorld())
+                remove(entity);
+        }
+    }
+
+    private static class Viewer {
+        UUID world;
+        long chunk;
+        final Set<VirtualEntity> visible = Sets.newHashSet();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020. AddstarMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *  and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *  sublicense, and/or copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *
+ */
+
+package au.com.addstar.monolith.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import   net.minecraft.server.v1_16_R2.NBTTagCompound;
+import   net.minecraft.server.v1_16_R2.NBTTagList;
+
+public class CompactPropertyFormatTest {
+    private static final UUID OwnerA = UUID.fromString("0d4e7f6a-52b1-4a8e-9d0c-6b3c1f2e8a11");
+    private static final UUID OwnerB = UUID.fromString("7a1c9e44-0f3b-4d62-8e57-2c9b5d13f6a0");
+
+    private static NBTTagCompound customTag(String name, UUID owner, boolean codec) {
+        NBTTagCompound value = new NBTTagCompound();
+        value.setString("==", "org.bukkit.util.Vector");
+        value.setDouble("x", 1.5);
+        value.setDouble("y", -64);
+        value.setDouble("z", 1e9);
+
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setString("name", name);
+        tag.setLong("UUIDLeast", owner.getLeastSignificantBits());
+        tag.setLong("UUIDMost", owner.getMostSignificantBits());
+        tag.setByte("type", PropertyBase.TYPE_CUSTOM);
+        if (codec)
+            tag.setBoolean("codec", true);
+        tag.set("value", value);
+        return tag;
+    }
+
+    private static NBTTagList roundTrip(NBTTagList list) {
+        return CompactPropertyFormat.decode(CompactPropertyFormat.encode(list));
+    }
+
+    @Test
+    public void roundTripsEveryPropertyType() {
+        NBTTagList list = new NBTTagList();
+        list.add(new StringProperty("title", OwnerA, "Sword of \u00e9t\u00e9 \ud83d\udde1").getTag());
+        list.add(new StringProperty("empty", OwnerB, "").getTag());
+        list.add(new IntegerProperty("kills", OwnerA, 1234567).getTag());
+        list.add(new IntegerProperty("negative", OwnerB, Integer.MIN_VALUE).getTag());
+        list.add(new FloatProperty("ratio", OwnerA, -0.125).getTag());
+        list.add(new FloatProperty("max", OwnerB, Double.MAX_VALUE).getTag());
+        list.add(customTag("target", OwnerA, false));
+        list.add(customTag("coded", OwnerB, true));
+
+        assertEquals(list, roundTrip(list));
+    }
+
+    @Test
+    public void keepsUnknownTypesWhole() {
+        NBTTagCompound unknown = new NBTTagCompound();
+        unknown.setString("name", "future");
+        unknown.setLong("UUIDLeast", OwnerA.getLeastSignificantBits());
+        unknown.setLong("UUIDMost", OwnerA.getMostSignificantBits());
+        unknown.setByte("type", (byte) 5);
+        unknown.setIntArray("value", new int[] {1, 2, 3});
+        unknown.setString("extra", "kept");
+
+        NBTTagList list = new NBTTagList();
+        list.add(new StringProperty("before", OwnerA, "a").getTag());
+        list.add(unknown);
+        list.add(new IntegerProperty("after", OwnerA, 7).getTag());
+
+        assertEquals(list, roundTrip(list));
+    }
+
+    @Test
+    public void roundTripsEmptyList() {
+        NBTTagList list = new NBTTagList();
+        assertEquals(list, roundTrip(list));
+        assertEquals(0, CompactPropertyFormat.decode(new byte[0]).size());
+    }
+
+    @Test
+    public void rejectsCorruptLengths() {
+        NBTTagList list = new NBTTagList();
+        list.add(new StringProperty("name", OwnerA, "value").getTag());
+        byte[] data = CompactPropertyFormat.encode(list);
+
+        // The owner count follows the version byte. Make it negative, then huge.
+        byte[] negative = new byte[] {data[0], (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] huge = new byte[] {data[0], (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertRejected(negative);
+        assertRejected(huge);
+
+        // Cut short part way through the value
+        assertRejected(Arrays.copyOf(data, data.length - 2));
+    }
+
+    @Test
+    public void rejectsUnknownVersion() {
+        byte[] data = CompactPropertyFormat.encode(new NBTTagList());
+        data[0] = 99;
+        assertRejected(data);
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            CompactPropertyFormat.decode(data);
+            fail("Corrupt data was accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage() != null);
+        }
+    }
+}